@@ -0,0 +1,134 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.utils.BitMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Compares the old BitSet based aspect check of EntitySystem with matching compiled
+ * word masks against the packed component bits, for different aspect sizes and
+ * numbers of registered component types (up to 64 types uses the single long path).
+ */
+@State(Scope.Thread)
+public class AspectMatchBenchmark {
+    private static final int ENTITIES = 4096;
+
+    @Param({"1", "4", "16"})
+    private int aspectSize;
+
+    @Param({"48", "256"})
+    private int componentTypes;
+
+    private BitSet[] entityBits;
+    private BitMatrix matrix;
+
+    private BitSet allSet;
+    private BitSet exclusionSet;
+    private BitSet oneSet;
+
+    private long[] allMask;
+    private long[] exclusionMask;
+    private long[] oneMask;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        allSet = new BitSet();
+        exclusionSet = new BitSet();
+        oneSet = new BitSet();
+        for (int i = 0; aspectSize > i; i++) {
+            allSet.set(random.nextInt(componentTypes));
+        }
+        exclusionSet.set(random.nextInt(componentTypes));
+        oneSet.set(random.nextInt(componentTypes));
+        oneSet.set(random.nextInt(componentTypes));
+
+        entityBits = new BitSet[ENTITIES];
+        matrix = new BitMatrix(ENTITIES);
+        for (int id = 0; ENTITIES > id; id++) {
+            BitSet bits = new BitSet();
+            if (random.nextBoolean()) {
+                bits.or(allSet); // make sure a good part of the entities gets past the all check
+            }
+            for (int i = 0; 8 > i; i++) {
+                bits.set(random.nextInt(componentTypes));
+            }
+            entityBits[id] = bits;
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                matrix.set(id, i);
+            }
+        }
+
+        allMask = BitMatrix.toWords(allSet);
+        exclusionMask = BitMatrix.toWords(exclusionSet);
+        oneMask = BitMatrix.toWords(oneSet);
+    }
+
+    @Benchmark
+    public int bitSetCheck() {
+        int matches = 0;
+        for (int id = 0; ENTITIES > id; id++) {
+            BitSet componentBits = entityBits[id];
+            boolean interested = true;
+
+            for (int i = allSet.nextSetBit(0); i >= 0; i = allSet.nextSetBit(i + 1)) {
+                if (!componentBits.get(i)) {
+                    interested = false;
+                    break;
+                }
+            }
+            if (interested) {
+                interested = !exclusionSet.intersects(componentBits);
+            }
+            if (interested) {
+                interested = oneSet.intersects(componentBits);
+            }
+
+            if (interested) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiledCheck() {
+        int matches = 0;
+        for (int id = 0; ENTITIES > id; id++) {
+            if (matrix.matches(id, allMask, exclusionMask, oneMask)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+import com.artemis.storage.DenseComponentStorage;
+import com.artemis.storage.HashedComponentStorage;
+import com.artemis.storage.SparseSetComponentStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Throughput of the component storages, for components spread over a large id range.
+ * See ComponentStorageFootprint for the memory used by each storage.
+ */
+@State(Scope.Thread)
+public class ComponentStorageBenchmark {
+    private static final int ID_RANGE = 1000000;
+
+    @Param({"dense", "sparseSet", "hashed"})
+    private String storageType;
+
+    @Param({"1000", "100000"})
+    private int components;
+
+    private ComponentStorage storage;
+    private int[] ids;
+    private int[] absentIds;
+    private Component component;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        storage = createStorage(storageType);
+        component = new Dummy();
+
+        Random random = new Random(1);
+        ids = new int[components];
+        for (int i = 0; components > i; i++) {
+            ids[i] = random.nextInt(ID_RANGE);
+            storage.set(ids[i], component);
+        }
+        absentIds = new int[components];
+        for (int i = 0; components > i; i++) {
+            absentIds[i] = ID_RANGE + random.nextInt(ID_RANGE);
+        }
+    }
+
+    @Benchmark
+    public int getPresent() {
+        int found = 0;
+        for (int i = 0; ids.length > i; i++) {
+            if (storage.get(ids[i]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int getAbsent() {
+        int found = 0;
+        for (int i = 0; absentIds.length > i; i++) {
+            if (storage.get(absentIds[i]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int churn() {
+        int index = cursor++ % ids.length;
+        storage.remove(ids[index]);
+        storage.set(ids[index], component);
+        return storage.size();
+    }
+
+    static ComponentStorage createStorage(String type) {
+        if ("dense".equals(type)) {
+            return new DenseComponentStorage();
+        } else if ("sparseSet".equals(type)) {
+            return new SparseSetComponentStorage();
+        } else if ("hashed".equals(type)) {
+            return new HashedComponentStorage();
+        }
+        throw new IllegalArgumentException("Unknown storage " + type);
+    }
+
+    static class Dummy extends Component {
+    }
+}
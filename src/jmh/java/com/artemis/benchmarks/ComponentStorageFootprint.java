@@ -0,0 +1,67 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+
+import java.util.Random;
+
+/**
+ * Prints the heap retained by each component storage holding the same components,
+ * spread over a range of entity ids. The component instances themselves are shared
+ * and not counted. Run with a fixed heap, e.g. java -Xms1g -Xmx1g.
+ */
+public final class ComponentStorageFootprint {
+    private static final String[] STORAGES = {"dense", "sparseSet", "hashed"};
+    private static final int[] COUNTS = {10, 1000, 100000};
+    private static final int ID_RANGE = 1000000;
+
+    private ComponentStorageFootprint() {
+    }
+
+    public static void main(String[] args) {
+        Component component = new ComponentStorageBenchmark.Dummy();
+        for (int count : COUNTS) {
+            for (String type : STORAGES) {
+                long before = usedMemory();
+                ComponentStorage storage = ComponentStorageBenchmark.createStorage(type);
+                Random random = new Random(1);
+                for (int i = 0; count > i; i++) {
+                    storage.set(random.nextInt(ID_RANGE), component);
+                }
+                long after = usedMemory();
+                System.out.println(String.format("%-10s %7d components: %,12d bytes (size %d)", type, count, after - before, storage.size()));
+            }
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; 4 > i; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
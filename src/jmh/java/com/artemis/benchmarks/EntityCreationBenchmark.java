@@ -0,0 +1,87 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.Entity;
+import com.artemis.SequentialUuidGenerator;
+import com.artemis.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+
+/**
+ * Measures the entity creation rate depending on how entity UUIDs are generated.
+ * <p/>
+ * createWithRandomUuid matches the old behaviour of generating a random UUID for
+ * every new entity, createWithoutUuid is the common case of an entity that never
+ * asks for its UUID, and createWithSequentialUuid uses the counter based generator.
+ * The threaded variants show the contention on the shared SecureRandom.
+ */
+@State(Scope.Thread)
+public class EntityCreationBenchmark {
+    private World randomWorld;
+    private World sequentialWorld;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        randomWorld = new World();
+        randomWorld.initialize();
+
+        sequentialWorld = new World();
+        sequentialWorld.setUuidGenerator(new SequentialUuidGenerator());
+        sequentialWorld.initialize();
+    }
+
+    @Benchmark
+    public Entity createWithoutUuid() {
+        return randomWorld.createEntity();
+    }
+
+    @Benchmark
+    public UUID createWithRandomUuid() {
+        return randomWorld.createEntity().getUuid();
+    }
+
+    @Benchmark
+    public UUID createWithSequentialUuid() {
+        return sequentialWorld.createEntity().getUuid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID createWithRandomUuidThreaded() {
+        return randomWorld.createEntity().getUuid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID createWithSequentialUuidThreaded() {
+        return sequentialWorld.createEntity().getUuid();
+    }
+}
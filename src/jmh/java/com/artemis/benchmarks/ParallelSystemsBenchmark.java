@@ -0,0 +1,181 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.Aspect;
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.Entity;
+import com.artemis.World;
+import com.artemis.annotations.Mapper;
+import com.artemis.annotations.Writes;
+import com.artemis.systems.EntityProcessingSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures a world tick with four systems that each write their own component type,
+ * processed one after the other (sequential), on a ForkJoinPool (parallel) and with the
+ * concurrent schedule on the calling thread (deterministic).
+ */
+@State(Scope.Thread)
+public class ParallelSystemsBenchmark {
+    @Param({"sequential", "parallel", "deterministic"})
+    public String mode;
+
+    @Param({"100000"})
+    public int entities;
+
+    private World world;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        world = new World();
+        world.setSystem(new SystemA());
+        world.setSystem(new SystemB());
+        world.setSystem(new SystemC());
+        world.setSystem(new SystemD());
+        if (!"sequential".equals(mode)) {
+            pool = new ForkJoinPool();
+            world.setSystemPool(pool);
+            world.setDeterministic("deterministic".equals(mode));
+        }
+        world.initialize();
+
+        for (int i = 0; entities > i; i++) {
+            world.createEntity()
+                    .addComponent(new A())
+                    .addComponent(new B())
+                    .addComponent(new C())
+                    .addComponent(new D())
+                    .addToWorld();
+        }
+        world.process();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public World process() {
+        world.process();
+        return world;
+    }
+
+    private static double step(double value) {
+        return Math.sqrt(value * value + 1.0) * 0.5;
+    }
+
+    public static class A extends Component {
+        double value;
+    }
+
+    public static class B extends Component {
+        double value;
+    }
+
+    public static class C extends Component {
+        double value;
+    }
+
+    public static class D extends Component {
+        double value;
+    }
+
+    @Writes(A.class)
+    static class SystemA extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<A> mapper;
+
+        SystemA() {
+            super(Aspect.getAspectForAll(A.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            A a = mapper.get(e);
+            a.value = step(a.value);
+        }
+    }
+
+    @Writes(B.class)
+    static class SystemB extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<B> mapper;
+
+        SystemB() {
+            super(Aspect.getAspectForAll(B.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            B b = mapper.get(e);
+            b.value = step(b.value);
+        }
+    }
+
+    @Writes(C.class)
+    static class SystemC extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<C> mapper;
+
+        SystemC() {
+            super(Aspect.getAspectForAll(C.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            C c = mapper.get(e);
+            c.value = step(c.value);
+        }
+    }
+
+    @Writes(D.class)
+    static class SystemD extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<D> mapper;
+
+        SystemD() {
+            super(Aspect.getAspectForAll(D.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            D d = mapper.get(e);
+            d.value = step(d.value);
+        }
+    }
+}
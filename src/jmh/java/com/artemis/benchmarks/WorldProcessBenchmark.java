@@ -0,0 +1,144 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.benchmarks;
+
+import com.artemis.Aspect;
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.Entity;
+import com.artemis.World;
+import com.artemis.annotations.Mapper;
+import com.artemis.systems.EntityProcessingSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a world tick without entity changes (idle) and with a share of the entities
+ * deleted and spawned again every tick (churn), with entity recycling enabled.
+ * <p/>
+ * Both ticks should not allocate, run with -prof gc to check that no collections happen.
+ * WorldAllocationTest asserts the same on the allocation counter of the thread.
+ */
+@State(Scope.Thread)
+public class WorldProcessBenchmark {
+    @Param({"10000"})
+    public int entities;
+
+    @Param({"1000"})
+    public int churn;
+
+    private World world;
+    private Entity[] spawned;
+    private Position[] positions;
+    private Velocity[] velocities;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        world = new World();
+        world.getEntityManager().setRecycleEntities(true);
+        world.setSystem(new MovementSystem());
+        world.setSystem(new PositionSystem());
+        world.initialize();
+
+        spawned = new Entity[entities];
+        positions = new Position[entities];
+        velocities = new Velocity[entities];
+        for (int i = 0; entities > i; i++) {
+            positions[i] = new Position();
+            velocities[i] = new Velocity();
+            spawned[i] = spawn(i);
+        }
+        world.process();
+    }
+
+    @Benchmark
+    public World idle() {
+        world.process();
+        return world;
+    }
+
+    @Benchmark
+    public World churn() {
+        for (int i = 0; churn > i; i++) {
+            int slot = next++ % entities;
+            spawned[slot].deleteFromWorld();
+            spawned[slot] = spawn(slot);
+        }
+        world.process();
+        return world;
+    }
+
+    private Entity spawn(int slot) {
+        Entity e = world.createEntity();
+        e.addComponent(positions[slot]);
+        if (slot % 2 == 0) {
+            e.addComponent(velocities[slot]);
+        }
+        e.addToWorld();
+        return e;
+    }
+
+    public static class Position extends Component {
+        float x;
+    }
+
+    public static class Velocity extends Component {
+        float x;
+    }
+
+    static class MovementSystem extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<Position> pm;
+        @Mapper
+        ComponentMapper<Velocity> vm;
+
+        MovementSystem() {
+            super(Aspect.getAspectForAll(Position.class, Velocity.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            pm.get(e).x += vm.get(e).x;
+        }
+    }
+
+    static class PositionSystem extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<Position> pm;
+
+        PositionSystem() {
+            super(Aspect.getAspectForAll(Position.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            pm.get(e).x *= 0.5f;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.Arrays;
+
+/**
+ * All entities sharing the same composition of component types, when the
+ * ComponentManager uses archetype storage.
+ * <p/>
+ * The entities of an archetype are packed into fixed-size chunks, each chunk holding
+ * one column of components per component type of the archetype. Entities are kept
+ * dense: removing an entity moves the last entity of the archetype into its slot.
+ *
+ * @see ComponentManager#setArchetypeStorage(boolean)
+ */
+public final class Archetype {
+    private final int index;
+    private final long[] componentBits;
+    private final int[] types;
+    private final int[] columns;
+    private final Bag<ArchetypeChunk> chunks;
+    private final ComponentTypeRegistry registry;
+    private int size;
+
+    private Archetype[] addEdges;
+    private Archetype[] removeEdges;
+
+    Archetype(int index, long[] componentBits, ComponentTypeRegistry registry) {
+        this.index = index;
+        this.registry = registry;
+        this.componentBits = componentBits;
+        this.chunks = new Bag<ArchetypeChunk>();
+
+        int count = 0;
+        int highest = -1;
+        for (int word = 0; componentBits.length > word; word++) {
+            count += Long.bitCount(componentBits[word]);
+            if (componentBits[word] != 0L) {
+                highest = (word << 6) + 63 - Long.numberOfLeadingZeros(componentBits[word]);
+            }
+        }
+
+        types = new int[count];
+        columns = new int[highest + 1];
+        Arrays.fill(columns, -1);
+        for (int i = 0, column = 0; highest >= i; i++) {
+            if ((componentBits[i >>> 6] & (1L << i)) != 0L) {
+                types[column] = i;
+                columns[i] = column++;
+            }
+        }
+
+        addEdges = new Archetype[0];
+        removeEdges = new Archetype[0];
+    }
+
+    /**
+     * @return a unique index of this archetype within its world.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the number of entities in this archetype.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the chunks of this archetype. Only the first chunks hold entities, the
+     * last chunk may be empty, it is kept so entities moving in and out at a chunk
+     * boundary don't allocate chunks over and over.
+     *
+     * @return the chunks of this archetype.
+     */
+    public ImmutableBag<ArchetypeChunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Check if the entities of this archetype possess a component type.
+     *
+     * @param type the component type
+     * @return true if the type is part of this archetype.
+     */
+    public boolean has(ComponentType type) {
+        return getColumn(type) >= 0;
+    }
+
+    int getColumn(ComponentType type) {
+        return getColumn(registry.resolve(type).getIndex());
+    }
+
+    int getColumn(int typeIndex) {
+        return typeIndex < columns.length ? columns[typeIndex] : -1;
+    }
+
+    int getColumnCount() {
+        return types.length;
+    }
+
+    int getType(int column) {
+        return types[column];
+    }
+
+    long[] getComponentBits() {
+        return componentBits;
+    }
+
+    Archetype getAddEdge(int typeIndex) {
+        return typeIndex < addEdges.length ? addEdges[typeIndex] : null;
+    }
+
+    void setAddEdge(int typeIndex, Archetype archetype) {
+        if (typeIndex >= addEdges.length) {
+            addEdges = Arrays.copyOf(addEdges, typeIndex + 1);
+        }
+        addEdges[typeIndex] = archetype;
+    }
+
+    Archetype getRemoveEdge(int typeIndex) {
+        return typeIndex < removeEdges.length ? removeEdges[typeIndex] : null;
+    }
+
+    void setRemoveEdge(int typeIndex, Archetype archetype) {
+        if (typeIndex >= removeEdges.length) {
+            removeEdges = Arrays.copyOf(removeEdges, typeIndex + 1);
+        }
+        removeEdges[typeIndex] = archetype;
+    }
+
+    Component get(int slot, int column) {
+        return chunks.get(slot >>> ArchetypeChunk.SHIFT).get(slot & ArchetypeChunk.MASK, column);
+    }
+
+    void set(int slot, int column, Component component) {
+        chunks.get(slot >>> ArchetypeChunk.SHIFT).set(slot & ArchetypeChunk.MASK, column, component);
+    }
+
+    /**
+     * Append an entity to this archetype.
+     *
+     * @param entityId id of the entity
+     * @return the slot of the entity
+     */
+    int allocate(int entityId) {
+        int slot = size++;
+        int chunk = slot >>> ArchetypeChunk.SHIFT;
+        if (chunk == chunks.size()) {
+            chunks.add(new ArchetypeChunk(this, types.length));
+        }
+        chunks.get(chunk).allocate(entityId);
+        return slot;
+    }
+
+    /**
+     * Remove the entity in a slot, moving the last entity of the archetype into it.
+     *
+     * @param slot the slot to free
+     * @return id of the entity that was moved into the slot, or -1 if none was moved.
+     */
+    int release(int slot) {
+        int last = --size;
+        ArchetypeChunk lastChunk = chunks.get(last >>> ArchetypeChunk.SHIFT);
+        int lastIndex = last & ArchetypeChunk.MASK;
+
+        int moved = -1;
+        if (slot != last) {
+            moved = lastChunk.getEntityId(lastIndex);
+            chunks.get(slot >>> ArchetypeChunk.SHIFT).copyFrom(slot & ArchetypeChunk.MASK, lastChunk, lastIndex);
+        }
+        lastChunk.releaseLast();
+        if (lastIndex == 0 && chunks.size() > (last >>> ArchetypeChunk.SHIFT) + 1) {
+            // the chunk is now empty, drop the empty one kept after it
+            chunks.removeLast();
+        }
+        return moved;
+    }
+
+    @Override
+    public String toString() {
+        return "Archetype[" + index + "] " + Arrays.toString(types);
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+/**
+ * A fixed-size block of entities of a single archetype, with one column of
+ * components per component type of the archetype. Index i of every column holds
+ * a component of the entity with id getEntityId(i).
+ *
+ * @see Archetype
+ */
+public final class ArchetypeChunk {
+    static final int SHIFT = 7;
+    static final int MASK = (1 << SHIFT) - 1;
+
+    /**
+     * Maximum number of entities in a chunk.
+     */
+    public static final int CAPACITY = 1 << SHIFT;
+
+    private final Archetype archetype;
+    private final int[] entityIds;
+    private final Component[][] columns;
+    private int size;
+
+    ArchetypeChunk(Archetype archetype, int columnCount) {
+        this.archetype = archetype;
+        this.entityIds = new int[CAPACITY];
+        this.columns = new Component[columnCount][CAPACITY];
+    }
+
+    /**
+     * @return the archetype this chunk belongs to.
+     */
+    public Archetype getArchetype() {
+        return archetype;
+    }
+
+    /**
+     * @return the number of entities in this chunk.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index index within this chunk, smaller than size()
+     * @return id of the entity at the index.
+     */
+    public int getEntityId(int index) {
+        return entityIds[index];
+    }
+
+    /**
+     * Returns the column of a component type. Only the first size() elements are valid.
+     *
+     * @param type the component type
+     * @return the column, or null if the type is not part of the archetype.
+     */
+    public Component[] getColumn(ComponentType type) {
+        int column = archetype.getColumn(type);
+        return column >= 0 ? columns[column] : null;
+    }
+
+    Component get(int index, int column) {
+        return columns[column][index];
+    }
+
+    void set(int index, int column, Component component) {
+        columns[column][index] = component;
+    }
+
+    void allocate(int entityId) {
+        entityIds[size++] = entityId;
+    }
+
+    void copyFrom(int index, ArchetypeChunk chunk, int fromIndex) {
+        entityIds[index] = chunk.entityIds[fromIndex];
+        for (int column = 0; columns.length > column; column++) {
+            columns[column][index] = chunk.columns[column][fromIndex];
+        }
+    }
+
+    void releaseLast() {
+        size--;
+        for (int column = 0; columns.length > column; column++) {
+            columns[column][size] = null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.storage.PackedComponentStorage;
+
+/**
+ * The components of a single type within the archetype storage, so ComponentMappers
+ * can read them the same way as from any other storage.
+ * <p/>
+ * Packed components keep their fields in a PackedComponentStorage, the archetype
+ * only records that the entity possesses the type and its column stays empty.
+ */
+class ArchetypeComponentStorage implements ComponentStorage {
+    private final ArchetypeStorage archetypes;
+    private final int typeIndex;
+    private final PackedComponentStorage packed;
+    private int size;
+
+    ArchetypeComponentStorage(ArchetypeStorage archetypes, int typeIndex, ComponentStorage packed) {
+        this.archetypes = archetypes;
+        this.typeIndex = typeIndex;
+        this.packed = (PackedComponentStorage) packed;
+    }
+
+    @Override
+    public Component get(int entityId) {
+        if (packed != null) {
+            return packed.get(entityId);
+        }
+        return archetypes.get(entityId, typeIndex);
+    }
+
+    @Override
+    public void set(int entityId, Component component) {
+        if (!archetypes.has(entityId, typeIndex)) {
+            size++;
+        }
+        if (packed != null) {
+            packed.set(entityId, component);
+            archetypes.set(entityId, typeIndex, null);
+        } else {
+            archetypes.set(entityId, typeIndex, component);
+        }
+    }
+
+    @Override
+    public void remove(int entityId) {
+        if (archetypes.has(entityId, typeIndex)) {
+            size--;
+            archetypes.remove(entityId, typeIndex);
+            if (packed != null) {
+                packed.remove(entityId);
+            }
+        }
+    }
+
+    /*
+     * The entity is removed from the archetypes as a whole, only update the bookkeeping.
+     */
+    void removed(int entityId) {
+        size--;
+        if (packed != null) {
+            packed.remove(entityId);
+        }
+    }
+
+    /*
+     * The entity has been placed in an archetype with this type already, store the component.
+     */
+    void placed(int entityId, Component component) {
+        size++;
+        if (packed != null) {
+            packed.set(entityId, component);
+        } else {
+            archetypes.set(entityId, typeIndex, component);
+        }
+    }
+
+    PackedComponentStorage getPackedStorage() {
+        return packed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Component storage grouping entities by composition, used by the ComponentManager
+ * when archetype storage is enabled.
+ * <p/>
+ * Adding or removing a component moves the entity to the archetype of its new
+ * composition. Transitions between archetypes are cached on the archetypes, so the
+ * composition only needs to be looked up the first time a transition is taken.
+ */
+class ArchetypeStorage {
+    private final ComponentTypeRegistry types;
+    private final Bag<Archetype> archetypes;
+    private final Map<Composition, Archetype> archetypesByComposition;
+    private final Archetype empty;
+
+    private final Bag<Archetype> archetypeOfEntity;
+    private int[] slotOfEntity;
+
+    ArchetypeStorage(ComponentTypeRegistry types) {
+        this.types = types;
+        archetypes = new Bag<Archetype>();
+        archetypesByComposition = new HashMap<Composition, Archetype>();
+        archetypeOfEntity = new Bag<Archetype>();
+        slotOfEntity = new int[64];
+        empty = getArchetype(new long[0]);
+    }
+
+    ImmutableBag<Archetype> getArchetypes() {
+        return archetypes;
+    }
+
+    Archetype getArchetypeOf(int entityId) {
+        if (archetypeOfEntity.isIndexWithinBounds(entityId)) {
+            return archetypeOfEntity.get(entityId);
+        }
+        return null;
+    }
+
+    Component get(int entityId, int typeIndex) {
+        Archetype archetype = getArchetypeOf(entityId);
+        if (archetype != null) {
+            int column = archetype.getColumn(typeIndex);
+            if (column >= 0) {
+                return archetype.get(slotOfEntity[entityId], column);
+            }
+        }
+        return null;
+    }
+
+    boolean has(int entityId, int typeIndex) {
+        Archetype archetype = getArchetypeOf(entityId);
+        return archetype != null && archetype.getColumn(typeIndex) >= 0;
+    }
+
+    void set(int entityId, int typeIndex, Component component) {
+        Archetype current = getArchetypeOf(entityId);
+        if (current != null) {
+            int column = current.getColumn(typeIndex);
+            if (column >= 0) {
+                current.set(slotOfEntity[entityId], column, component);
+                return;
+            }
+        }
+
+        Archetype from = current != null ? current : empty;
+        Archetype target = from.getAddEdge(typeIndex);
+        if (target == null) {
+            long[] bits = Arrays.copyOf(from.getComponentBits(), Math.max(from.getComponentBits().length, (typeIndex >>> 6) + 1));
+            bits[typeIndex >>> 6] |= 1L << typeIndex;
+            target = getArchetype(bits);
+            from.setAddEdge(typeIndex, target);
+        }
+
+        move(entityId, current, target);
+        target.set(slotOfEntity[entityId], target.getColumn(typeIndex), component);
+    }
+
+    void remove(int entityId, int typeIndex) {
+        Archetype current = getArchetypeOf(entityId);
+        if (current == null || current.getColumn(typeIndex) < 0) {
+            return;
+        }
+
+        Archetype target = current.getRemoveEdge(typeIndex);
+        if (target == null) {
+            long[] bits = current.getComponentBits().clone();
+            bits[typeIndex >>> 6] &= ~(1L << typeIndex);
+            target = getArchetype(bits);
+            current.setRemoveEdge(typeIndex, target);
+        }
+
+        if (target == empty) {
+            removeAll(entityId);
+        } else {
+            move(entityId, current, target);
+        }
+    }
+
+    /**
+     * Moves an entity straight to the archetype of a composition, keeping the components
+     * of the types it already has and leaving the other columns empty.
+     *
+     * @param entityId id of the entity
+     * @param bits     the component bits of the composition
+     */
+    void place(int entityId, long[] bits) {
+        Archetype target = getArchetype(bits);
+        Archetype current = getArchetypeOf(entityId);
+        if (target == empty) {
+            removeAll(entityId);
+        } else if (current != target) {
+            move(entityId, current, target);
+        }
+    }
+
+    void removeAll(int entityId) {
+        Archetype current = getArchetypeOf(entityId);
+        if (current != null) {
+            release(current, slotOfEntity[entityId]);
+            archetypeOfEntity.set(entityId, null);
+        }
+    }
+
+    private void move(int entityId, Archetype from, Archetype to) {
+        int slot = to.allocate(entityId);
+        if (from != null) {
+            int fromSlot = slotOfEntity[entityId];
+            for (int column = 0, s = to.getColumnCount(); s > column; column++) {
+                int fromColumn = from.getColumn(to.getType(column));
+                if (fromColumn >= 0) {
+                    to.set(slot, column, from.get(fromSlot, fromColumn));
+                }
+            }
+            release(from, fromSlot);
+        }
+
+        archetypeOfEntity.ensureCapacity(entityId);
+        archetypeOfEntity.set(entityId, to);
+        if (entityId >= slotOfEntity.length) {
+            slotOfEntity = Arrays.copyOf(slotOfEntity, Math.max(entityId + 1, (slotOfEntity.length * 3) / 2 + 1));
+        }
+        slotOfEntity[entityId] = slot;
+    }
+
+    private void release(Archetype archetype, int slot) {
+        int moved = archetype.release(slot);
+        if (moved >= 0) {
+            slotOfEntity[moved] = slot;
+        }
+    }
+
+    private Archetype getArchetype(long[] bits) {
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0L) {
+            length--;
+        }
+        Composition composition = new Composition(length == bits.length ? bits : Arrays.copyOf(bits, length));
+
+        Archetype archetype = archetypesByComposition.get(composition);
+        if (archetype == null) {
+            archetype = new Archetype(archetypes.size(), composition.bits, types);
+            archetypes.add(archetype);
+            archetypesByComposition.put(composition, archetype);
+        }
+        return archetype;
+    }
+
+    /*
+     * Key of the archetype map, the component bits without trailing empty words.
+     */
+    private static final class Composition {
+        private final long[] bits;
+
+        private Composition(long[] bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Composition && Arrays.equals(bits, ((Composition) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+}
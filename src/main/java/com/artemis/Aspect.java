@@ -23,6 +23,10 @@
  */
 package com.artemis;
 
+import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
+import com.artemis.utils.ImmutableBag;
+
 import java.util.BitSet;
 
 /**
@@ -43,30 +47,66 @@ import java.util.BitSet;
  * Aspect.getEmpty().one(X.class, Y.class, Z.class).all(A.class, B.class, C.class).exclude(U.class, V.class)
  * is the same as:
  * Aspect.getAspectForAll(A.class, B.class, C.class).exclude(U.class, V.class).one(X.class, Y.class, Z.class)
+ * <p/>
+ * Systems compile their aspect into word masks with the component types of their world
+ * when they are added to it, changing an aspect afterwards has no effect on the systems
+ * using it.
  *
  * @author Arni Arent
  */
 public class Aspect {
-    private BitSet allSet;
-    private BitSet exclusionSet;
-    private BitSet oneSet;
+    private Bag<Class<? extends Component>> allTypes;
+    private Bag<Class<? extends Component>> exclusionTypes;
+    private Bag<Class<? extends Component>> oneTypes;
 
     private Aspect() {
-        this.allSet = new BitSet();
-        this.exclusionSet = new BitSet();
-        this.oneSet = new BitSet();
+        this.allTypes = new Bag<Class<? extends Component>>();
+        this.exclusionTypes = new Bag<Class<? extends Component>>();
+        this.oneTypes = new Bag<Class<? extends Component>>();
+    }
+
+    protected ImmutableBag<Class<? extends Component>> getAllTypes() {
+        return allTypes;
     }
 
-    protected BitSet getAllSet() {
-        return allSet;
+    protected ImmutableBag<Class<? extends Component>> getExclusionTypes() {
+        return exclusionTypes;
     }
 
-    protected BitSet getExclusionSet() {
-        return exclusionSet;
+    protected ImmutableBag<Class<? extends Component>> getOneTypes() {
+        return oneTypes;
     }
 
-    protected BitSet getOneSet() {
-        return oneSet;
+    /**
+     * @return true if no entity can match, because neither all nor one types are required.
+     */
+    protected boolean isEmpty() {
+        return allTypes.isEmpty() && oneTypes.isEmpty();
+    }
+
+    /**
+     * Compiles the current state of this aspect into masks that can be matched against
+     * the component bits of an entity with a few word-wise operations.
+     *
+     * @param types the component types of the world the masks are for
+     * @return the compiled aspect.
+     */
+    protected Matcher compile(ComponentTypeRegistry types) {
+        return new Matcher(toWords(allTypes, types), toWords(exclusionTypes, types), toWords(oneTypes, types));
+    }
+
+    private static long[] toWords(ImmutableBag<Class<? extends Component>> classes, ComponentTypeRegistry types) {
+        BitSet bits = new BitSet();
+        for (int i = 0, s = classes.size(); s > i; i++) {
+            bits.set(types.getIndexFor(classes.get(i)));
+        }
+        return BitMatrix.toWords(bits);
+    }
+
+    private static void add(Bag<Class<? extends Component>> bag, Class<? extends Component> type) {
+        if (!bag.contains(type)) {
+            bag.add(type);
+        }
     }
 
     /**
@@ -77,10 +117,10 @@ public class Aspect {
      * @return an aspect that can be matched against entities
      */
     public Aspect all(Class<? extends Component> type, Class<? extends Component>... types) {
-        allSet.set(ComponentType.getIndexFor(type));
+        add(allTypes, type);
 
         for (Class<? extends Component> t : types) {
-            allSet.set(ComponentType.getIndexFor(t));
+            add(allTypes, t);
         }
 
         return this;
@@ -95,10 +135,10 @@ public class Aspect {
      * @return an aspect that can be matched against entities
      */
     public Aspect exclude(Class<? extends Component> type, Class<? extends Component>... types) {
-        exclusionSet.set(ComponentType.getIndexFor(type));
+        add(exclusionTypes, type);
 
         for (Class<? extends Component> t : types) {
-            exclusionSet.set(ComponentType.getIndexFor(t));
+            add(exclusionTypes, t);
         }
         return this;
     }
@@ -111,10 +151,10 @@ public class Aspect {
      * @return an aspect that can be matched against entities
      */
     public Aspect one(Class<? extends Component> type, Class<? extends Component>... types) {
-        oneSet.set(ComponentType.getIndexFor(type));
+        add(oneTypes, type);
 
         for (Class<? extends Component> t : types) {
-            oneSet.set(ComponentType.getIndexFor(t));
+            add(oneTypes, t);
         }
         return this;
     }
@@ -172,4 +212,56 @@ public class Aspect {
     public static Aspect getEmpty() {
         return new Aspect();
     }
+
+    /**
+     * An aspect compiled into fixed long masks, see Aspect.compile(ComponentTypeRegistry).
+     */
+    protected static final class Matcher {
+        private final long[] all;
+        private final long[] exclude;
+        private final long[] one;
+
+        private Matcher(long[] all, long[] exclude, long[] one) {
+            this.all = all;
+            this.exclude = exclude;
+            this.one = one;
+        }
+
+        /**
+         * @return the component types mentioned by the aspect, as words of type indices.
+         */
+        public long[] getReferencedTypes() {
+            long[] types = new long[Math.max(all.length, Math.max(exclude.length, one.length))];
+            for (int w = 0; types.length > w; w++) {
+                types[w] = word(all, w) | word(exclude, w) | word(one, w);
+            }
+            return types;
+        }
+
+        private static long word(long[] mask, int w) {
+            return mask.length > w ? mask[w] : 0L;
+        }
+
+        /**
+         * Checks the component bits of an entity against the aspect: it must possess all
+         * of the all types, none of the excluded types and one of the one types.
+         *
+         * @param componentBits the component bits of all entities
+         * @param entityId      id of the entity to check
+         * @return true if the entity matches
+         */
+        public boolean matches(BitMatrix componentBits, int entityId) {
+            return componentBits.matches(entityId, all, exclude, one);
+        }
+
+        /**
+         * Checks a composition against the aspect.
+         *
+         * @param componentBits the words of the component bits to check
+         * @return true if the composition matches
+         */
+        public boolean matches(long[] componentBits) {
+            return BitMatrix.matches(componentBits, all, exclude, one);
+        }
+    }
 }
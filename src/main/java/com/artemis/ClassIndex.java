@@ -0,0 +1,59 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense indices to classes, used by a world to index its system classes.
+ * Lookups of classes indexed before don't take a lock, registering a class does.
+ */
+final class ClassIndex {
+    private final ClassValue<Integer> indices;
+    private final Map<Class<?>, Integer> registered;
+
+    ClassIndex() {
+        registered = new HashMap<Class<?>, Integer>();
+        indices = new ClassValue<Integer>() {
+            @Override
+            protected Integer computeValue(Class<?> type) {
+                return register(type);
+            }
+        };
+    }
+
+    int getIndex(Class<?> type) {
+        return indices.get(type);
+    }
+
+    private synchronized Integer register(Class<?> type) {
+        Integer index = registered.get(type);
+        if (index == null) {
+            index = registered.size();
+            registered.put(type, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+
+import java.util.Arrays;
+
+/**
+ * Records structural changes to entities, to be made when the world is processed next.
+ * Systems processed concurrently must not change entities directly, but can record the
+ * changes in a command buffer instead, see EntitySystem.getCommandBuffer().
+ * <p/>
+ * Every thread records into its own buffer, so recording never contends. The
+ * buffers are played back at the start of World.process(), ordered by the system that
+ * recorded them (in the order systems were added to the world, buffers of other threads
+ * last), then by origin entity, then in recording order. Commands recorded for the same
+ * origin entity by the same system are therefore played back in the same order however
+ * the entities of the system were spread over threads.
+ * <p/>
+ * Commands refer to entities by id, or by the token returned by create() for entities
+ * that will be created by the playback. Created entities are added to the world, and
+ * entities receiving or losing components are marked as changed. Commands for entities
+ * that have been deleted in the meantime are ignored. The arrays of a buffer are kept
+ * and reused after playback.
+ * <p/>
+ * Recording is synchronized on the buffer, so a thread can keep recording while the world
+ * plays back: the recorded commands are swapped out at the start of the playback, and
+ * commands recorded meanwhile are played back the next time. Tokens returned by create()
+ * are only valid until the next playback, a thread other than the one processing the world
+ * should hold the lock of the buffer while recording an entity and its components, e.g.
+ * <pre>
+ * synchronized (buffer) {
+ *     int entity = buffer.create();
+ *     buffer.addComponent(entity, new Position());
+ * }
+ * </pre>
+ * The buffer of a thread is dropped by the world once the thread has died and its
+ * commands have been played back.
+ *
+ * @see World#getCommandBuffer()
+ */
+public final class CommandBuffer {
+    private static final int CREATE = 0;
+    private static final int ADD = 1;
+    private static final int REMOVE = 2;
+    private static final int DELETE = 3;
+    private static final int CHANGED = 4;
+
+    private final World world;
+    private final int order;
+    private final Thread owner;
+
+    // guarded by this, recording may happen while the world plays back the previous commands
+    private Commands recording;
+    private Commands spare;
+    // only touched by the thread processing the world
+    private Commands playing;
+
+    CommandBuffer(World world, int order) {
+        this.world = world;
+        this.order = order;
+        owner = Thread.currentThread();
+        recording = new Commands();
+        spare = new Commands();
+    }
+
+    /**
+     * Record the creation of an entity, on behalf of no particular entity.
+     *
+     * @return a token to refer to the entity in later commands of this buffer.
+     */
+    public int create() {
+        return create(-1);
+    }
+
+    /**
+     * Record the creation of an entity.
+     *
+     * @param origin id of the entity the new entity is created for, used to order the playback.
+     * @return a token to refer to the entity in later commands of this buffer.
+     */
+    public synchronized int create(int origin) {
+        Commands commands = recording;
+        int token = -(commands.created.size() + 1);
+        if (commands.created.size() == commands.createdOrigins.length) {
+            commands.createdOrigins = Arrays.copyOf(commands.createdOrigins, commands.created.size() * 2);
+        }
+        commands.createdOrigins[commands.created.size()] = origin;
+        commands.created.add(null);
+        commands.record(CREATE, token, origin, null, null);
+        return token;
+    }
+
+    /**
+     * Record adding a component to an entity.
+     *
+     * @param entity    id of the entity, or a token returned by create()
+     * @param component the component to add
+     */
+    public void addComponent(int entity, Component component) {
+        addComponent(entity, component, world.getComponentTypes().getTypeFor(component.getClass()));
+    }
+
+    /**
+     * Record adding a component to an entity.
+     *
+     * @param entity    id of the entity, or a token returned by create()
+     * @param component the component to add
+     * @param type      the type of the component
+     */
+    public synchronized void addComponent(int entity, Component component, ComponentType type) {
+        recording.record(ADD, entity, originOf(entity), type, component);
+    }
+
+    /**
+     * Record removing a component from an entity.
+     *
+     * @param entity id of the entity, or a token returned by create()
+     * @param type   the type of the component
+     */
+    public void removeComponent(int entity, Class<? extends Component> type) {
+        removeComponent(entity, world.getComponentTypes().getTypeFor(type));
+    }
+
+    /**
+     * Record removing a component from an entity.
+     *
+     * @param entity id of the entity, or a token returned by create()
+     * @param type   the type of the component
+     */
+    public synchronized void removeComponent(int entity, ComponentType type) {
+        recording.record(REMOVE, entity, originOf(entity), type, null);
+    }
+
+    /**
+     * Record deleting an entity from the world.
+     *
+     * @param entity id of the entity, or a token returned by create()
+     */
+    public synchronized void delete(int entity) {
+        recording.record(DELETE, entity, originOf(entity), null, null);
+    }
+
+    /**
+     * Record marking an entity as changed.
+     *
+     * @param entity id of the entity, or a token returned by create()
+     */
+    public synchronized void changed(int entity) {
+        recording.record(CHANGED, entity, originOf(entity), null, null);
+    }
+
+    /**
+     * @return the number of commands waiting for playback.
+     */
+    public synchronized int size() {
+        return recording.size;
+    }
+
+    int getOrder() {
+        return order;
+    }
+
+    /**
+     * Takes the recorded commands for playback, commands recorded from now on are
+     * played back the next time.
+     *
+     * @return the number of commands to play back.
+     */
+    synchronized int detach() {
+        playing = recording;
+        recording = spare != null ? spare : new Commands();
+        spare = null;
+        return playing.size;
+    }
+
+    /**
+     * Forget the commands after playback, keeping their arrays for reuse.
+     */
+    synchronized void release() {
+        playing.clear();
+        spare = playing;
+        playing = null;
+    }
+
+    /**
+     * @return true if the thread that recorded into this buffer has died and every command has been played back.
+     */
+    synchronized boolean isAbandoned() {
+        return !owner.isAlive() && recording.size == 0;
+    }
+
+    int getPlaybackSize() {
+        return playing.size;
+    }
+
+    int getOrigin(int index) {
+        return playing.origins[index];
+    }
+
+    /**
+     * Make a detached command.
+     *
+     * @param index the index of the command
+     */
+    void play(int index) {
+        Commands commands = playing;
+        int target = commands.targets[index];
+        if (commands.commands[index] == CREATE) {
+            Entity e = world.createEntity();
+            commands.created.set(-target - 1, e);
+            e.addToWorld();
+            return;
+        }
+
+        Entity e = resolve(commands, target);
+        if (e == null) {
+            return;
+        }
+        switch (commands.commands[index]) {
+            case ADD:
+                e.addComponent(commands.components[index], commands.types[index]);
+                e.changedInWorld();
+                break;
+            case REMOVE:
+                e.removeComponent(commands.types[index]);
+                e.changedInWorld();
+                break;
+            case DELETE:
+                e.deleteFromWorld();
+                break;
+            default:
+                e.changedInWorld();
+                break;
+        }
+    }
+
+    private Entity resolve(Commands commands, int entity) {
+        if (entity < 0) {
+            return commands.created.get(-entity - 1);
+        }
+        EntityManager em = world.getEntityManager();
+        return em.isActive(entity) ? em.getEntity(entity) : null;
+    }
+
+    private int originOf(int entity) {
+        return entity < 0 ? recording.createdOrigins[-entity - 1] : entity;
+    }
+
+    /*
+     * The commands recorded between two playbacks.
+     */
+    private static final class Commands {
+        private int size;
+        private int[] commands;
+        private int[] targets;
+        private int[] origins;
+        private ComponentType[] types;
+        private Component[] components;
+
+        private Bag<Entity> created;
+        private int[] createdOrigins;
+
+        private Commands() {
+            commands = new int[16];
+            targets = new int[16];
+            origins = new int[16];
+            types = new ComponentType[16];
+            components = new Component[16];
+            created = new Bag<Entity>();
+            createdOrigins = new int[16];
+        }
+
+        private void record(int command, int target, int origin, ComponentType type, Component component) {
+            if (size == commands.length) {
+                int capacity = size * 2;
+                commands = Arrays.copyOf(commands, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                origins = Arrays.copyOf(origins, capacity);
+                types = Arrays.copyOf(types, capacity);
+                components = Arrays.copyOf(components, capacity);
+            }
+            commands[size] = command;
+            targets[size] = target;
+            origins[size] = origin;
+            types[size] = type;
+            components[size] = component;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(types, 0, size, null);
+            Arrays.fill(components, 0, size, null);
+            size = 0;
+            created.clear();
+        }
+    }
+}
@@ -23,74 +23,347 @@
  */
 package com.artemis;
 
+import com.artemis.storage.DenseComponentStorage;
+import com.artemis.storage.PackedComponent;
+import com.artemis.storage.PackedComponentStorage;
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
+import com.artemis.utils.ImmutableBag;
 
+import java.util.Arrays;
 import java.util.BitSet;
 
 public class ComponentManager extends Manager {
-    private Bag<Bag<Component>> componentsByType;
+    private static final ImmutableBag<Archetype> NO_ARCHETYPES = new Bag<Archetype>(0);
+
+    private Bag<ComponentStorage> storages;
     private Bag<Entity> deleted;
+    private Bag<Bag<PooledComponent>> pools;
+    private BitSet transferred;
+    private BitMatrix componentBits;
+    private ComponentTypeRegistry types;
+
+    private ArchetypeStorage archetypes;
+    private boolean used;
+    private boolean trackChanges;
 
     public ComponentManager() {
-        componentsByType = new Bag<Bag<Component>>();
+        storages = new Bag<ComponentStorage>();
         deleted = new Bag<Entity>();
+        pools = new Bag<Bag<PooledComponent>>();
+        transferred = new BitSet();
+    }
+
+    /**
+     * Check if components are stored grouped by archetype.
+     *
+     * @return true if archetype storage is used.
+     */
+    public boolean isArchetypeStorage() {
+        return archetypes != null;
+    }
+
+    /**
+     * Choose between storing components in a ComponentStorage per component type (the
+     * default), or grouped by archetype: entities with the same composition are packed
+     * together in chunks with one column per component type, see Archetype. Archetype
+     * storage favours iterating over entities of the same composition, at the cost of
+     * moving an entity whenever its composition changes.
+     * <p/>
+     * This must be chosen before any component is added and before any ComponentMapper
+     * is created.
+     *
+     * @param archetypeStorage true to use archetype storage.
+     * @throws IllegalStateException if components have already been stored.
+     */
+    public void setArchetypeStorage(boolean archetypeStorage) {
+        if (archetypeStorage != isArchetypeStorage()) {
+            if (used) {
+                throw new IllegalStateException("The component storage can't be changed once it has been used");
+            }
+            archetypes = archetypeStorage ? new ArchetypeStorage(types) : null;
+        }
+    }
+
+    /**
+     * Check if entities are marked as changed when their composition changes.
+     *
+     * @return true if changes are tracked.
+     */
+    public boolean isTrackChanges() {
+        return trackChanges;
+    }
+
+    /**
+     * Enable or disable marking an entity that has been added to the world as changed
+     * whenever a component is added to or removed from it, so calling
+     * Entity.changedInWorld() after editing its components is no longer needed. The
+     * systems are refreshed once when the world is processed, however many components
+     * were added or removed.
+     *
+     * @param trackChanges true to track changes.
+     */
+    public void setTrackChanges(boolean trackChanges) {
+        this.trackChanges = trackChanges;
+    }
+
+    /**
+     * Returns all archetypes of the world, in order of creation. Archetypes are never
+     * removed, new archetypes are added at the end. Empty when archetype storage is
+     * not used.
+     *
+     * @return all archetypes.
+     */
+    public ImmutableBag<Archetype> getArchetypes() {
+        if (archetypes != null) {
+            return archetypes.getArchetypes();
+        }
+        return NO_ARCHETYPES;
+    }
+
+    /**
+     * Set the storage of a component type. Types without a storage set use a
+     * DenseComponentStorage, or a PackedComponentStorage for PackedComponent types,
+     * which can't use any other storage. The storage of a type can't be changed once a component
+     * of the type has been added or a ComponentMapper for the type has been created.
+     *
+     * @param type    the component type
+     * @param storage the storage for components of the type
+     * @throws IllegalStateException if the type is already in use, or archetype storage is used.
+     */
+    public void setStorage(ComponentType type, ComponentStorage storage) {
+        if (archetypes != null) {
+            throw new IllegalStateException("Components are stored by archetype");
+        }
+        if (PackedComponent.class.isAssignableFrom(type.getType())) {
+            throw new IllegalStateException("Packed components always use a PackedComponentStorage");
+        }
+        type = types.resolve(type);
+        storages.ensureCapacity(type.getIndex());
+        if (storages.get(type.getIndex()) != null) {
+            throw new IllegalStateException("The storage of " + type + " is already in use");
+        }
+        storages.set(type.getIndex(), storage);
+    }
+
+    /**
+     * Set the storage of a component type, see setStorage(ComponentType, ComponentStorage).
+     *
+     * @param type    the component type
+     * @param storage the storage for components of the type
+     */
+    public void setStorage(Class<? extends Component> type, ComponentStorage storage) {
+        setStorage(types.getTypeFor(type), storage);
     }
 
     @Override
     protected void initialize() {
     }
 
+    @Override
+    protected void setWorld(World world) {
+        super.setWorld(world);
+        componentBits = world.getEntityManager().getComponentBits();
+        types = world.getComponentTypes();
+    }
+
     private void removeComponentsOfEntity(Entity e) {
-        BitSet componentBits = e.getComponentBits();
-        for (int i = componentBits.nextSetBit(0); i >= 0; i = componentBits.nextSetBit(i + 1)) {
-            componentsByType.get(i).set(e.getId(), null);
+        int id = e.getId();
+        // the components of a transferred entity now belong to the other world
+        boolean recycle = !transferred.get(id);
+        transferred.clear(id);
+        if (archetypes != null) {
+            for (int i = componentBits.nextSetBit(id, 0); i >= 0; i = componentBits.nextSetBit(id, i + 1)) {
+                if (recycle) {
+                    recycle(i, storages.get(i).get(id));
+                }
+                ((ArchetypeComponentStorage) storages.get(i)).removed(id);
+            }
+            archetypes.removeAll(id);
+        } else {
+            for (int i = componentBits.nextSetBit(id, 0); i >= 0; i = componentBits.nextSetBit(id, i + 1)) {
+                ComponentStorage storage = storages.get(i);
+                if (recycle) {
+                    recycle(i, storage.get(id));
+                }
+                storage.remove(id);
+            }
         }
-        componentBits.clear();
+        componentBits.clear(id);
     }
 
-    protected void addComponent(Entity e, ComponentType type, Component component) {
-        componentsByType.ensureCapacity(type.getIndex());
+    /**
+     * Takes a component of a pooled type from its pool.
+     *
+     * @param type the pooled component type
+     * @return a reset component, or null if the pool is empty.
+     */
+    PooledComponent obtain(ComponentType type) {
+        if (pools.isIndexWithinBounds(type.getIndex())) {
+            Bag<PooledComponent> pool = pools.get(type.getIndex());
+            if (pool != null && !pool.isEmpty()) {
+                return pool.removeLast();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param type the pooled component type
+     * @return the number of components in the pool of the type.
+     */
+    int getPoolSize(ComponentType type) {
+        type = types.resolve(type);
+        if (pools.isIndexWithinBounds(type.getIndex()) && pools.get(type.getIndex()) != null) {
+            return pools.get(type.getIndex()).size();
+        }
+        return 0;
+    }
 
-        Bag<Component> components = componentsByType.get(type.getIndex());
-        if (components == null) {
-            components = new Bag<Component>();
-            componentsByType.set(type.getIndex(), components);
+    private void recycle(int typeIndex, Component component) {
+        if (component instanceof PooledComponent) {
+            PooledComponent pooled = (PooledComponent) component;
+            pooled.reset();
+            pools.ensureCapacity(typeIndex);
+            Bag<PooledComponent> pool = pools.get(typeIndex);
+            if (pool == null) {
+                pool = new Bag<PooledComponent>();
+                pools.set(typeIndex, pool);
+            }
+            pool.add(pooled);
+        }
+    }
+
+    /**
+     * Stores the components of an entity of this world for an entity of another world,
+     * translating the component types by class. Packed components are copied, all
+     * other components are shared until the entity of this world is deleted, and are
+     * not returned to the pools of this world when it is. With
+     * archetype storage the entity is placed in the archetype of its whole composition
+     * at once.
+     *
+     * @param e      the entity of this world
+     * @param target the component manager of the other world
+     * @param moved  the entity of the other world
+     */
+    void transfer(Entity e, ComponentManager target, Entity moved) {
+        int id = e.getId();
+        int movedId = moved.getId();
+        transferred.set(id);
+        if (target.archetypes != null) {
+            long[] bits = new long[0];
+            for (int i = componentBits.nextSetBit(id, 0); i >= 0; i = componentBits.nextSetBit(id, i + 1)) {
+                int index = target.types.getIndexFor(types.get(i).getType());
+                if ((index >>> 6) >= bits.length) {
+                    bits = Arrays.copyOf(bits, (index >>> 6) + 1);
+                }
+                bits[index >>> 6] |= 1L << index;
+            }
+            target.archetypes.place(movedId, bits);
+        }
+        for (int i = componentBits.nextSetBit(id, 0); i >= 0; i = componentBits.nextSetBit(id, i + 1)) {
+            ComponentType type = target.types.getTypeFor(types.get(i).getType());
+            ComponentStorage storage = target.getStorage(type);
+            if (storage instanceof ArchetypeComponentStorage) {
+                ((ArchetypeComponentStorage) storage).placed(movedId, storages.get(i).get(id));
+            } else {
+                storage.set(movedId, storages.get(i).get(id));
+            }
+            target.componentBits.set(movedId, type.getIndex());
         }
+    }
 
-        components.set(e.getId(), component);
+    protected void addComponent(Entity e, ComponentType type, Component component) {
+        type = types.resolve(type);
+        ComponentStorage storage = getStorage(type);
 
-        e.getComponentBits().set(type.getIndex());
+        if (!componentBits.get(e.getId(), type.getIndex())) {
+            storage.set(e.getId(), component);
+            componentBits.set(e.getId(), type.getIndex());
+            compositionChanged(e);
+        } else {
+            Component replaced = storage.get(e.getId());
+            storage.set(e.getId(), component);
+            if (replaced != component) {
+                recycle(type.getIndex(), replaced);
+            }
+        }
     }
 
     protected void removeComponent(Entity e, ComponentType type) {
-        if (e.getComponentBits().get(type.getIndex())) {
-            componentsByType.get(type.getIndex()).set(e.getId(), null);
-            e.getComponentBits().clear(type.getIndex());
+        type = types.resolve(type);
+        if (componentBits.get(e.getId(), type.getIndex())) {
+            ComponentStorage storage = storages.get(type.getIndex());
+            Component component = storage.get(e.getId());
+            storage.remove(e.getId());
+            componentBits.clear(e.getId(), type.getIndex());
+            recycle(type.getIndex(), component);
+            compositionChanged(e);
+        }
+    }
+
+    private void compositionChanged(Entity e) {
+        if (trackChanges && world.getEntityManager().isActive(e.getId())) {
+            world.changedEntity(e);
         }
     }
 
-    protected Bag<Component> getComponentsByType(ComponentType type) {
-        Bag<Component> components = componentsByType.get(type.getIndex());
-        if (components == null) {
-            components = new Bag<Component>();
-            componentsByType.set(type.getIndex(), components);
+    /**
+     * Returns the storage holding the components of a type.
+     *
+     * @param type the component type
+     * @return the storage of the type.
+     */
+    protected ComponentStorage getStorage(ComponentType type) {
+        used = true;
+        storages.ensureCapacity(type.getIndex());
+        ComponentStorage storage = storages.get(type.getIndex());
+        if (storage == null) {
+            ComponentStorage packed = null;
+            if (PackedComponent.class.isAssignableFrom(type.getType())) {
+                packed = new PackedComponentStorage(type.getType().asSubclass(PackedComponent.class));
+            }
+            if (archetypes != null) {
+                storage = new ArchetypeComponentStorage(archetypes, type.getIndex(), packed);
+            } else if (packed != null) {
+                storage = packed;
+            } else {
+                storage = new DenseComponentStorage();
+            }
+            storages.set(type.getIndex(), storage);
         }
-        return components;
+        return storage;
+    }
+
+    /**
+     * Returns the storage holding the components of a packed type.
+     *
+     * @param type the packed component type
+     * @return the storage of the type.
+     */
+    protected PackedComponentStorage getPackedStorage(ComponentType type) {
+        ComponentStorage storage = getStorage(type);
+        if (storage instanceof ArchetypeComponentStorage) {
+            storage = ((ArchetypeComponentStorage) storage).getPackedStorage();
+        }
+        return (PackedComponentStorage) storage;
     }
 
     protected Component getComponent(Entity e, ComponentType type) {
-        Bag<Component> components = componentsByType.get(type.getIndex());
-        if (components != null) {
-            return components.get(e.getId());
+        type = types.resolve(type);
+        if (storages.isIndexWithinBounds(type.getIndex())) {
+            ComponentStorage storage = storages.get(type.getIndex());
+            if (storage != null) {
+                return storage.get(e.getId());
+            }
         }
         return null;
     }
 
     public Bag<Component> getComponentsFor(Entity e, Bag<Component> fillBag) {
-        BitSet componentBits = e.getComponentBits();
-
-        for (int i = componentBits.nextSetBit(0); i >= 0; i = componentBits.nextSetBit(i + 1)) {
-            fillBag.add(componentsByType.get(i).get(e.getId()));
+        int id = e.getId();
+        for (int i = componentBits.nextSetBit(id, 0); i >= 0; i = componentBits.nextSetBit(id, i + 1)) {
+            fillBag.add(storages.get(i).get(id));
         }
 
         return fillBag;
@@ -23,7 +23,9 @@
  */
 package com.artemis;
 
-import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
+
+import java.lang.reflect.Constructor;
 
 /**
  * High performance component retrieval from entities. Use this wherever you
@@ -34,26 +36,34 @@ import com.artemis.utils.Bag;
  * @param <A> the class type of the component
  */
 public class ComponentMapper<A extends Component> {
-    private ComponentType type;
-    private Class<A> classType;
-    private Bag<Component> components;
+    private final ComponentType type;
+    private final Class<A> classType;
+    private final ComponentStorage storage;
+    private final BitMatrix componentBits;
+    private final ComponentManager componentManager;
+    private final boolean pooled;
+    private Constructor<A> constructor;
 
-    private ComponentMapper(Class<A> type, World world) {
-        this.type = ComponentType.getTypeFor(type);
-        components = world.getComponentManager().getComponentsByType(this.type);
+    ComponentMapper(Class<A> type, World world) {
+        this.type = world.getComponentTypes().getTypeFor(type);
+        storage = world.getComponentManager().getStorage(this.type);
+        componentBits = world.getEntityManager().getComponentBits();
+        componentManager = world.getComponentManager();
+        pooled = PooledComponent.class.isAssignableFrom(type);
         this.classType = type;
     }
 
     /**
-     * Fast but unsafe retrieval of a component for this entity.
-     * No bounding checks, so this could throw an ArrayIndexOutOfBoundsExeption,
-     * however in most scenarios you already know the entity possesses this component.
+     * Fast retrieval of a component for this entity. How fast depends on the
+     * ComponentStorage of the type, with the default storage this is an array lookup.
      *
      * @param e the entity that should possess the component
      * @return the instance of the component
      */
+    @SuppressWarnings("unchecked")
     public A get(Entity e) {
-        return classType.cast(components.get(e.getId()));
+        // only components of the type are stored, the cast is unchecked
+        return (A) storage.get(e.getId());
     }
 
     /**
@@ -63,9 +73,10 @@ public class ComponentMapper<A extends Component> {
      * @param e the entity that should possess the component
      * @return the instance of the component
      */
+    @SuppressWarnings("unchecked")
     public A getSafe(Entity e) {
-        if (components.isIndexWithinBounds(e.getId())) {
-            return classType.cast(components.get(e.getId()));
+        if (componentBits.get(e.getId(), type.getIndex())) {
+            return (A) storage.get(e.getId());
         }
         return null;
     }
@@ -77,17 +88,72 @@ public class ComponentMapper<A extends Component> {
      * @return true if the entity has this component type, false if it doesn't.
      */
     public boolean has(Entity e) {
-        return getSafe(e) != null;
+        return componentBits.get(e.getId(), type.getIndex());
+    }
+
+    /**
+     * Create a component of this type and add it to the entity, replacing the component
+     * of this type the entity had. Components of a PooledComponent type are taken from
+     * the pool of the world when it isn't empty, other components are created with
+     * their no-argument constructor.
+     *
+     * @param e the entity
+     * @return the new component.
+     */
+    @SuppressWarnings("unchecked")
+    public A create(Entity e) {
+        A component = pooled ? (A) componentManager.obtain(type) : null;
+        if (component == null) {
+            component = newInstance();
+        }
+        e.addComponent(component, type);
+        return component;
+    }
+
+    /**
+     * Returns the component of this type of the entity, creating and adding one if the
+     * entity doesn't have one yet.
+     *
+     * @param e the entity
+     * @return the component of the entity.
+     */
+    public A getOrCreate(Entity e) {
+        A component = getSafe(e);
+        if (component == null) {
+            component = create(e);
+        }
+        return component;
+    }
+
+    /**
+     * @return the component type of this mapper.
+     */
+    public ComponentType getType() {
+        return type;
+    }
+
+    private A newInstance() {
+        try {
+            if (constructor == null) {
+                Constructor<A> noArgs = classType.getDeclaredConstructor();
+                noArgs.setAccessible(true);
+                constructor = noArgs;
+            }
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Component " + classType.getName() + " needs a no-argument constructor", e);
+        }
     }
 
     /**
-     * Returns a component mapper for this type of components.
+     * Returns the component mapper of a world for this type of components. Every world
+     * creates a single mapper per type.
      *
      * @param type  the type of components this mapper uses.
      * @param world the world that this component mapper should use.
-     * @return a new mapper.
+     * @return the mapper of the world.
      */
     public static <T extends Component> ComponentMapper<T> getFor(Class<T> type, World world) {
-        return new ComponentMapper<T>(type, world);
+        return world.getMapper(type);
     }
 }
@@ -0,0 +1,63 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+/**
+ * Stores the components of a single component type, by entity id.
+ * <p/>
+ * The storage of a type can be chosen with ComponentManager.setStorage(), depending
+ * on how the type is used. Implementations are found in the com.artemis.storage package:
+ * a dense array indexed by entity id (the default), a sparse set for types that are
+ * iterated often, and a hash table for types only a few entities possess.
+ * <p/>
+ * A storage is only written to by the ComponentManager, which also keeps track of
+ * the component bits of the entities.
+ */
+public interface ComponentStorage {
+    /**
+     * @param entityId id of the entity
+     * @return the component of the entity, or null if it has none.
+     */
+    Component get(int entityId);
+
+    /**
+     * Store the component of an entity, replacing the previous component if any.
+     *
+     * @param entityId  id of the entity
+     * @param component the component, not null
+     */
+    void set(int entityId, Component component);
+
+    /**
+     * Remove the component of an entity, if it has one.
+     *
+     * @param entityId id of the entity
+     */
+    void remove(int entityId);
+
+    /**
+     * @return the number of components in this storage.
+     */
+    int size();
+}
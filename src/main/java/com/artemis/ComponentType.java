@@ -23,16 +23,21 @@
  */
 package com.artemis;
 
-import java.util.HashMap;
-
+/**
+ * The type of a component class within a world, giving the class the index of its bit in
+ * the component bits of the entities. Obtain types from World.getComponentTypes(), types
+ * of different worlds have different indices.
+ *
+ * @see ComponentTypeRegistry
+ */
 public class ComponentType {
-    private static int INDEX = 0;
+    private static final ComponentTypeRegistry GLOBAL = new ComponentTypeRegistry();
 
     private final int index;
     private final Class<? extends Component> type;
 
-    private ComponentType(Class<? extends Component> type) {
-        index = INDEX++;
+    ComponentType(Class<? extends Component> type, int index) {
+        this.index = index;
         this.type = type;
     }
 
@@ -40,25 +45,38 @@ public class ComponentType {
         return index;
     }
 
+    /**
+     * @return the class of the components of this type.
+     */
+    public Class<? extends Component> getType() {
+        return type;
+    }
+
     @Override
     public String toString() {
         return "ComponentType[" + type.getSimpleName() + "] (" + index + ")";
     }
 
-    private static HashMap<Class<? extends Component>, ComponentType> componentTypes = new HashMap<Class<? extends Component>, ComponentType>();
-
+    /**
+     * Returns the type of a class in a registry shared by all worlds. Worlds accept these
+     * types and translate them to their own by class.
+     *
+     * @param c the component class
+     * @return the global type of the class.
+     * @deprecated use World.getComponentTypes().getTypeFor(Class).
+     */
+    @Deprecated
     public static ComponentType getTypeFor(Class<? extends Component> c) {
-        ComponentType type = componentTypes.get(c);
-
-        if (type == null) {
-            type = new ComponentType(c);
-            componentTypes.put(c, type);
-        }
-
-        return type;
+        return GLOBAL.getTypeFor(c);
     }
 
+    /**
+     * @param c the component class
+     * @return the index of the global type of the class.
+     * @deprecated use World.getComponentTypes().getIndexFor(Class).
+     */
+    @Deprecated
     public static int getIndexFor(Class<? extends Component> c) {
-        return getTypeFor(c).getIndex();
+        return GLOBAL.getIndexFor(c);
     }
 }
@@ -0,0 +1,115 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns the component types of a world their index, so the bits of the components of
+ * the entities of a world only span the component types that world actually uses.
+ * <p/>
+ * Looking up the type of a class that has been registered before doesn't take a lock,
+ * the type is cached on the class with a ClassValue. Registering a class is synchronized,
+ * so every class gets a single type and the indices stay dense.
+ *
+ * @see World#getComponentTypes()
+ */
+public final class ComponentTypeRegistry {
+    // the cached types must not reference the registry, they are kept alive by the class
+    private final ClassValue<ComponentType> types;
+    private final Map<Class<?>, ComponentType> registered;
+    private final Bag<ComponentType> byIndex;
+
+    public ComponentTypeRegistry() {
+        registered = new HashMap<Class<?>, ComponentType>();
+        byIndex = new Bag<ComponentType>();
+        types = new ClassValue<ComponentType>() {
+            @Override
+            protected ComponentType computeValue(Class<?> type) {
+                return register(type.asSubclass(Component.class));
+            }
+        };
+    }
+
+    /**
+     * Returns the type of a component class, registering it if needed.
+     *
+     * @param type the component class
+     * @return the component type.
+     */
+    public ComponentType getTypeFor(Class<? extends Component> type) {
+        return types.get(type);
+    }
+
+    /**
+     * Returns the index of a component class, registering it if needed.
+     *
+     * @param type the component class
+     * @return the index of the component type.
+     */
+    public int getIndexFor(Class<? extends Component> type) {
+        return types.get(type).getIndex();
+    }
+
+    /**
+     * Returns a registered component type by index.
+     *
+     * @param index the index
+     * @return the type, or null if no type has this index.
+     */
+    public synchronized ComponentType get(int index) {
+        return byIndex.isIndexWithinBounds(index) ? byIndex.get(index) : null;
+    }
+
+    /**
+     * @return the number of registered component types.
+     */
+    public synchronized int size() {
+        return byIndex.size();
+    }
+
+    /**
+     * Returns the type of this registry for a type of any registry, like the deprecated
+     * global ComponentType.getTypeFor(Class).
+     *
+     * @param type a component type
+     * @return the type of the same class in this registry.
+     */
+    ComponentType resolve(ComponentType type) {
+        return types.get(type.getType());
+    }
+
+    private synchronized ComponentType register(Class<? extends Component> type) {
+        ComponentType componentType = registered.get(type);
+        if (componentType == null) {
+            componentType = new ComponentType(type, byIndex.size());
+            registered.put(type, componentType);
+            byIndex.add(componentType);
+        }
+        return componentType;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.BitMatrix;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.Arrays;
+
+/**
+ * Interns the distinct component compositions of the entities of a world, and
+ * remembers which systems are interested in each of them.
+ * <p/>
+ * Compositions are identified by the words of the component row of an entity, trailing
+ * zero words are ignored so a composition keeps its id when the component matrix grows.
+ * Looking up the composition of an entity doesn't allocate unless it is seen for the
+ * first time. The interested systems are kept as a mask of system indices, that is
+ * computed on first use and discarded when the systems of the world change.
+ */
+final class CompositionCache {
+    private static final int EMPTY = -1;
+
+    private int[] table;
+    private int[] hashes;
+    private long[][] keys;
+    private long[][] systems;
+    private int size;
+
+    CompositionCache() {
+        table = new int[16];
+        Arrays.fill(table, EMPTY);
+        hashes = new int[8];
+        keys = new long[8][];
+        systems = new long[8][];
+    }
+
+    /**
+     * @return the number of distinct compositions seen.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the composition of a row, interning the composition if it
+     * wasn't seen before.
+     *
+     * @param bits the component matrix
+     * @param row  the row of the entity
+     * @return the composition id.
+     */
+    int getComposition(BitMatrix bits, int row) {
+        int length = bits.getStride();
+        while (length > 0 && bits.getWord(row, length - 1) == 0L) {
+            length--;
+        }
+        int hash = hash(bits, row, length);
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int composition = table[i];
+            if (composition == EMPTY) {
+                return intern(bits, row, length, hash);
+            }
+            if (hashes[composition] == hash && equal(keys[composition], bits, row, length)) {
+                return composition;
+            }
+        }
+    }
+
+    /**
+     * Returns the systems interested in a composition, as a mask of system indices.
+     *
+     * @param composition the composition id
+     * @param candidates  the systems of the world
+     * @return the mask, indexed by EntitySystem.getSystemIndex().
+     */
+    long[] getSystems(int composition, ImmutableBag<EntitySystem> candidates) {
+        long[] mask = systems[composition];
+        if (mask == null) {
+            mask = new long[1];
+            long[] key = keys[composition];
+            for (int i = 0, s = candidates.size(); s > i; i++) {
+                EntitySystem system = candidates.get(i);
+                if (system.isInterested(key)) {
+                    int index = system.getSystemIndex();
+                    if ((index >>> 6) >= mask.length) {
+                        mask = Arrays.copyOf(mask, (index >>> 6) + 1);
+                    }
+                    mask[index >>> 6] |= 1L << index;
+                }
+            }
+            systems[composition] = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * Discards the interested systems of all compositions, called when a system is
+     * added to or removed from the world.
+     */
+    void invalidate() {
+        Arrays.fill(systems, 0, size, null);
+    }
+
+    private int intern(BitMatrix bits, int row, int length, int hash) {
+        int composition = size++;
+        if (composition == keys.length) {
+            int capacity = keys.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            systems = Arrays.copyOf(systems, capacity);
+        }
+        long[] key = new long[length];
+        for (int w = 0; length > w; w++) {
+            key[w] = bits.getWord(row, w);
+        }
+        hashes[composition] = hash;
+        keys[composition] = key;
+
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(composition);
+        }
+        return composition;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        for (int i = 0; size > i; i++) {
+            insert(i);
+        }
+    }
+
+    private void insert(int composition) {
+        int mask = table.length - 1;
+        int i = hashes[composition] & mask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = composition;
+    }
+
+    private static int hash(BitMatrix bits, int row, int length) {
+        long h = 0L;
+        for (int w = 0; length > w; w++) {
+            h = (h ^ bits.getWord(row, w)) * 0x9E3779B97F4A7C15L;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean equal(long[] key, BitMatrix bits, int row, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int w = 0; length > w; w++) {
+            if (key[w] != bits.getWord(row, w)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
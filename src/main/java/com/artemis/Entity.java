@@ -24,8 +24,8 @@
 package com.artemis;
 
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
 
-import java.util.BitSet;
 import java.util.UUID;
 
 /**
@@ -38,8 +38,7 @@ public final class Entity {
     private UUID uuid;
 
     private int id;
-    private BitSet componentBits;
-    private BitSet systemBits;
+    private int generation;
 
     private World world;
     private EntityManager entityManager;
@@ -50,10 +49,10 @@ public final class Entity {
         this.id = id;
         this.entityManager = world.getEntityManager();
         this.componentManager = world.getComponentManager();
-        systemBits = new BitSet();
-        componentBits = new BitSet();
 
-        reset();
+        // the rows of unused ids are empty: deleting an entity clears its components and systems,
+        // deleting a system clears its bits, so leave them alone as entities may be created on any thread
+        generation = entityManager.getGeneration(id);
     }
 
     /**
@@ -68,31 +67,45 @@ public final class Entity {
     }
 
     /**
-     * Returns a BitSet instance containing bits of the components the entity possesses.
+     * A handle for this entity that, unlike the id, can be safely kept after the
+     * entity has been deleted. Check it with World.isAlive(long) or World.resolve(long).
+     *
+     * @return handle of the entity.
+     * @see EntityHandle
+     */
+    public long getHandle() {
+        return EntityHandle.pack(id, generation);
+    }
+
+    /**
+     * Returns a view of the bits of the components the entity possesses. The bits
+     * of all entities are kept by the EntityManager.
      *
      * @return
      */
-    protected BitSet getComponentBits() {
-        return componentBits;
+    protected BitMatrix.Row getComponentBits() {
+        return entityManager.getComponentBits().getRow(id);
     }
 
     /**
-     * Returns a BitSet instance containing bits of the components the entity possesses.
+     * Returns a view of the bits of the systems the entity is part of. The bits
+     * of all entities are kept by the EntityManager.
      *
      * @return
      */
-    protected BitSet getSystemBits() {
-        return systemBits;
+    protected BitMatrix.Row getSystemBits() {
+        return entityManager.getSystemBits().getRow(id);
     }
 
     /**
      * Make entity ready for re-use.
-     * Will generate a new uuid for the entity.
+     * A new uuid will be generated for the entity when it is next requested.
      */
     protected void reset() {
-        systemBits.clear();
-        componentBits.clear();
-        uuid = UUID.randomUUID();
+        entityManager.getSystemBits().clear(id);
+        entityManager.getComponentBits().clear(id);
+        generation = entityManager.getGeneration(id);
+        uuid = null;
     }
 
     @Override
@@ -107,7 +120,7 @@ public final class Entity {
      * @return this entity for chaining.
      */
     public Entity addComponent(Component component) {
-        addComponent(component, ComponentType.getTypeFor(component.getClass()));
+        addComponent(component, world.getComponentTypes().getTypeFor(component.getClass()));
         return this;
     }
 
@@ -153,7 +166,7 @@ public final class Entity {
      * @return this entity for chaining.
      */
     public Entity removeComponent(Class<? extends Component> type) {
-        removeComponent(ComponentType.getTypeFor(type));
+        removeComponent(world.getComponentTypes().getTypeFor(type));
         return this;
     }
 
@@ -202,7 +215,7 @@ public final class Entity {
      * @return component that matches, or null if none is found.
      */
     public <T extends Component> T getComponent(Class<T> type) {
-        return type.cast(getComponent(ComponentType.getTypeFor(type)));
+        return type.cast(getComponent(world.getComponentTypes().getTypeFor(type)));
     }
 
     /**
@@ -227,7 +240,8 @@ public final class Entity {
     }
 
     /**
-     * This entity has changed, a component added or deleted.
+     * This entity has changed, a component added or deleted. Not needed when
+     * the ComponentManager tracks changes, see ComponentManager.setTrackChanges(boolean).
      */
     public void changedInWorld() {
         world.changedEntity(this);
@@ -259,13 +273,26 @@ public final class Entity {
     /**
      * Get the UUID for this entity.
      * This UUID is unique per entity (re-used entities get a new UUID).
+     * It is generated on first request by the world's UuidGenerator.
      *
      * @return uuid instance for this entity.
      */
     public UUID getUuid() {
+        if (uuid == null) {
+            uuid = world.getUuidGenerator().generate();
+        }
         return uuid;
     }
 
+    /**
+     * Hand the UUID of an entity moved to another world over to its new entity.
+     *
+     * @param e the entity that was moved
+     */
+    void takeUuid(Entity e) {
+        uuid = e.uuid;
+    }
+
     /**
      * Returns the world this entity belongs to.
      *
@@ -0,0 +1,72 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+/**
+ * Packs an entity id together with the generation of its slot into a single long.
+ * <p/>
+ * Entity ids are reused once an entity is deleted, so holding on to a plain id (or
+ * the Entity instance) can silently end up pointing at a different entity. The
+ * generation of a slot is bumped every time an entity occupying it is deleted, so
+ * a handle only resolves while the entity it was taken from is still alive.
+ * <p/>
+ * Handles are obtained with Entity.getHandle() and checked with World.isAlive(long)
+ * or World.resolve(long).
+ */
+public final class EntityHandle {
+    /**
+     * A handle that never resolves to an entity.
+     */
+    public static final long NONE = -1L;
+
+    private EntityHandle() {
+    }
+
+    /**
+     * Pack an id and a generation into a handle.
+     *
+     * @param id         id of the entity.
+     * @param generation generation of the entity's slot.
+     * @return the packed handle.
+     */
+    public static long pack(int id, int generation) {
+        return ((long) generation << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param handle a packed handle.
+     * @return the entity id part of the handle.
+     */
+    public static int getId(long handle) {
+        return (int) handle;
+    }
+
+    /**
+     * @param handle a packed handle.
+     * @return the generation part of the handle.
+     */
+    public static int getGeneration(long handle) {
+        return (int) (handle >>> 32);
+    }
+}
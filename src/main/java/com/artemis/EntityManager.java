@@ -24,33 +24,77 @@
 package com.artemis;
 
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
+import com.artemis.utils.StripedCounter;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class EntityManager extends Manager {
     private Bag<Entity> entities;
     private BitSet disabled;
+    private int[] generations;
+    private BitMatrix componentBits;
+    private BitMatrix systemBits;
 
     private int active;
     private long added;
-    private long created;
+    private StripedCounter created;
     private long deleted;
 
     private IdentifierPool identifierPool;
 
+    private Bag<Entity> deletedEntities;
+    private Bag<Entity> recycled;
+    private boolean recycleEntities;
+
     public EntityManager() {
         entities = new Bag<Entity>();
+        deletedEntities = new Bag<Entity>();
+        recycled = new Bag<Entity>();
         disabled = new BitSet();
+        generations = new int[64];
+        componentBits = new BitMatrix();
+        systemBits = new BitMatrix();
         identifierPool = new IdentifierPool();
+        created = new StripedCounter();
     }
 
     @Override
     protected void initialize() {
     }
 
+    /**
+     * Create a new or recycled entity. Safe to call from any thread: ids of deleted entities
+     * are handed out to every thread, recycled instances only to the thread that last
+     * processed the world. Threads get fresh ids from blocks they reserve once no
+     * deleted id is left.
+     *
+     * @return the entity.
+     */
     protected Entity createEntityInstance() {
-        Entity e = new Entity(world, identifierPool.checkOut());
-        created++;
+        int id = identifierPool.checkOutRecycled();
+        Entity e = null;
+        if (id >= 0) {
+            if (recycleEntities && identifierPool.isOwner() && recycled.isIndexWithinBounds(id)) {
+                e = recycled.get(id);
+                recycled.set(id, null);
+            }
+            if (e != null) {
+                e.reset();
+            }
+        } else {
+            id = identifierPool.checkOut();
+        }
+        if (e == null) {
+            e = new Entity(world, id);
+        }
+        created.increment();
         return e;
     }
 
@@ -73,16 +117,71 @@ public class EntityManager extends Manager {
 
     @Override
     public void deleted(Entity e) {
+        if (isActive(e.getId())) {
+            active--;
+        }
         entities.set(e.getId(), null);
 
         disabled.clear(e.getId());
 
-        identifierPool.checkIn(e.getId());
+        if (e.getId() >= generations.length) {
+            generations = Arrays.copyOf(generations, Math.max(e.getId() + 1, (generations.length * 3) / 2 + 1));
+        }
+        generations[e.getId()]++;
+
+        deletedEntities.add(e);
 
-        active--;
         deleted++;
     }
 
+    /**
+     * Return the ids of the entities deleted since the last call to the pool, and
+     * keep the entity instances for reuse if recycling is enabled. Must run after
+     * ComponentManager.clean(), so the ids are not handed out while the components
+     * of the deleted entities are still being removed. The calling thread becomes
+     * the one reusing the ids.
+     */
+    protected void clean() {
+        identifierPool.setOwner(Thread.currentThread());
+        if (deletedEntities.size() > 0) {
+            for (int i = 0; deletedEntities.size() > i; i++) {
+                Entity e = deletedEntities.get(i);
+                if (recycleEntities) {
+                    recycled.ensureCapacity(e.getId());
+                    recycled.set(e.getId(), e);
+                }
+                identifierPool.checkIn(e.getId());
+            }
+            deletedEntities.clear();
+        }
+        identifierPool.rebalance();
+    }
+
+    /**
+     * Check if deleted entity instances are reused for new entities.
+     *
+     * @return true if entities are recycled.
+     */
+    public boolean isRecycleEntities() {
+        return recycleEntities;
+    }
+
+    /**
+     * Enable or disable the reuse of deleted entity instances. When enabled, a
+     * deleted Entity instance is reset and handed out again by World.createEntity()
+     * once its id is reused, so spawning and deleting entities does not allocate.
+     * Don't keep references to deleted entities when recycling, use Entity.getHandle()
+     * instead.
+     *
+     * @param recycleEntities true to recycle entities.
+     */
+    public void setRecycleEntities(boolean recycleEntities) {
+        this.recycleEntities = recycleEntities;
+        if (!recycleEntities) {
+            recycled.clear();
+        }
+    }
+
     /**
      * Check if this entity is active.
      * Active means the entity is being actively processed.
@@ -91,7 +190,7 @@ public class EntityManager extends Manager {
      * @return true if active, false if not.
      */
     public boolean isActive(int entityId) {
-        return entities.get(entityId) != null;
+        return entities.isIndexWithinBounds(entityId) && entities.get(entityId) != null;
     }
 
     /**
@@ -104,6 +203,63 @@ public class EntityManager extends Manager {
         return !disabled.get(entityId);
     }
 
+    /**
+     * Get the current generation of an entity slot. The generation is bumped every
+     * time the entity occupying the slot is deleted.
+     *
+     * @param entityId
+     * @return the generation of the slot.
+     */
+    public int getGeneration(int entityId) {
+        if (entityId < generations.length) {
+            return generations[entityId];
+        }
+        return 0;
+    }
+
+    /**
+     * Check if the entity a handle was taken from is still in the world.
+     *
+     * @param handle the handle, see Entity.getHandle().
+     * @return true if the entity has been added and not deleted since the handle was taken.
+     */
+    public boolean isAlive(long handle) {
+        int id = EntityHandle.getId(handle);
+        return id >= 0 && getGeneration(id) == EntityHandle.getGeneration(handle)
+                && entities.isIndexWithinBounds(id) && entities.get(id) != null;
+    }
+
+    /**
+     * Get the entity a handle was taken from.
+     *
+     * @param handle the handle, see Entity.getHandle().
+     * @return the entity, or null if it is not alive anymore.
+     */
+    public Entity getEntity(long handle) {
+        if (isAlive(handle)) {
+            return entities.get(EntityHandle.getId(handle));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the bits of the components every entity possesses, one row per entity id.
+     *
+     * @return the component bits of all entities.
+     */
+    protected BitMatrix getComponentBits() {
+        return componentBits;
+    }
+
+    /**
+     * Returns the bits of the systems every entity is part of, one row per entity id.
+     *
+     * @return the system bits of all entities.
+     */
+    protected BitMatrix getSystemBits() {
+        return systemBits;
+    }
+
     /**
      * Get a entity with this id.
      *
@@ -131,7 +287,7 @@ public class EntityManager extends Manager {
      * @return how many entities have been created since start.
      */
     public long getTotalCreated() {
-        return created;
+        return created.sum();
     }
 
     /**
@@ -154,24 +310,200 @@ public class EntityManager extends Manager {
 
     /*
      * Used only internally to generate distinct ids for entities and reuse them.
+     * Free ids are kept in a primitive binary min-heap, so the lowest free id is always
+     * handed out first and no boxing happens once the heap has grown. Only the owner
+     * thread, the one processing the world, touches the heap. Once another thread has
+     * created an entity, the owner offers the lowest free ids to all threads in a ring
+     * whenever the world is cleaned, threads take them from it with a compare-and-set.
+     * Fresh ids are reserved in blocks with an atomic counter, every thread hands out
+     * the ids of its own block, so threads creating entities never wait on each other.
+     * The ids left in the blocks and the ring are taken back into the heap when the world
+     * is cleaned, so ids stay bounded by the live entities whichever thread creates them.
      */
-    private class IdentifierPool {
-        private Bag<Integer> ids;
-        private int nextAvailableId;
+    private static class IdentifierPool {
+        private static final int MIN_BLOCK_SIZE = 16;
+        private static final int MAX_BLOCK_SIZE = 256;
+        private static final int SHARED_SIZE = 1024;
+
+        private final AtomicInteger nextBlock;
+        private final ThreadLocal<IdRange> ranges;
+        private final AtomicReference<IdRange> allRanges;
+        private volatile Thread owner;
+        private volatile boolean sharing;
+        private int[] ids;
+        private int size;
+
+        // filled by the owner only, taken from by any thread
+        private final AtomicIntegerArray shared;
+        private final AtomicInteger sharedHead;
+        private volatile int sharedTail;
 
         public IdentifierPool() {
-            ids = new Bag<Integer>();
+            ids = new int[64];
+            nextBlock = new AtomicInteger();
+            ranges = new ThreadLocal<IdRange>();
+            allRanges = new AtomicReference<IdRange>();
+            shared = new AtomicIntegerArray(SHARED_SIZE);
+            sharedHead = new AtomicInteger();
+        }
+
+        public void setOwner(Thread owner) {
+            this.owner = owner;
+        }
+
+        public boolean isOwner() {
+            return Thread.currentThread() == owner;
+        }
+
+        /**
+         * @return a recycled id, the lowest one for the owner, or -1 if there is none.
+         */
+        public int checkOutRecycled() {
+            int id = take();
+            if (id >= 0) {
+                return id;
+            }
+            if (isOwner()) {
+                return size > 0 ? poll() : -1;
+            }
+            if (!sharing) {
+                sharing = true;
+            }
+            return -1;
         }
 
+        /**
+         * @return a fresh id from the block of the calling thread.
+         */
         public int checkOut() {
-            if (ids.size() > 0) {
-                return ids.removeLast();
+            IdRange range = ranges.get();
+            if (range == null) {
+                range = register();
+            }
+            while (true) {
+                long block = range.block.get();
+                int next = (int) (block >>> 32);
+                if ((int) block > next) {
+                    // only fails if the owner took the block back meanwhile
+                    if (range.block.compareAndSet(block, block + (1L << 32))) {
+                        return next;
+                    }
+                } else {
+                    // small blocks while there are few ids, so idle blocks don't inflate them
+                    int blockSize = Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, nextBlock.get() >>> 3));
+                    int start = nextBlock.getAndAdd(blockSize);
+                    range.block.set(((long) (start + 1) << 32) | (start + blockSize));
+                    return start;
+                }
             }
-            return nextAvailableId++;
         }
 
         public void checkIn(int id) {
-            ids.add(id);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, (size * 3) / 2 + 1);
+            }
+            int i = size++;
+            int parent;
+            while (i > 0 && ids[parent = (i - 1) >>> 1] > id) {
+                ids[i] = ids[parent];
+                i = parent;
+            }
+            ids[i] = id;
+        }
+
+        /**
+         * Takes the unused ids of the blocks and the ring back, and offers the lowest
+         * free ids to all threads again if other threads create entities. Called by the
+         * owner after the ids of deleted entities have been checked in.
+         */
+        public void rebalance() {
+            IdRange previous = null;
+            for (IdRange range = allRanges.get(); range != null; range = range.next) {
+                long block = range.block.getAndSet(0L);
+                for (int id = (int) (block >>> 32), end = (int) block; end > id; id++) {
+                    checkIn(id);
+                }
+                Thread thread = range.thread.get();
+                if (previous != null && (thread == null || !thread.isAlive())) {
+                    // new ranges are only pushed at the head, so the rest of the list is the owner's
+                    previous.next = range.next;
+                } else {
+                    previous = range;
+                }
+            }
+            int id;
+            while ((id = take()) >= 0) {
+                checkIn(id);
+            }
+            if (sharing) {
+                int tail = sharedTail;
+                for (int i = 0; size > 0 && SHARED_SIZE > i; i++) {
+                    shared.set(tail++ & (SHARED_SIZE - 1), poll());
+                }
+                sharedTail = tail;
+            }
+        }
+
+        private IdRange register() {
+            IdRange head;
+            IdRange range;
+            do {
+                head = allRanges.get();
+                range = new IdRange(head);
+            } while (!allRanges.compareAndSet(head, range));
+            ranges.set(range);
+            return range;
+        }
+
+        /**
+         * @return an id from the ring, or -1 if it is empty.
+         */
+        private int take() {
+            while (true) {
+                int head = sharedHead.get();
+                if (head == sharedTail) {
+                    return -1;
+                }
+                int id = shared.get(head & (SHARED_SIZE - 1));
+                // the owner only overwrites a slot once the head has passed it
+                if (sharedHead.compareAndSet(head, head + 1)) {
+                    return id;
+                }
+            }
+        }
+
+        private int poll() {
+            int id = ids[0];
+            int last = ids[--size];
+            int i = 0;
+            int child;
+            while ((child = (i << 1) + 1) < size) {
+                if (child + 1 < size && ids[child + 1] < ids[child]) {
+                    child++;
+                }
+                if (last <= ids[child]) {
+                    break;
+                }
+                ids[i] = ids[child];
+                i = child;
+            }
+            ids[i] = last;
+            return id;
+        }
+    }
+
+    /*
+     * The block of fresh ids of a thread, next id in the high and end in the low half.
+     */
+    private static final class IdRange {
+        private final AtomicLong block;
+        private final WeakReference<Thread> thread;
+        private volatile IdRange next;
+
+        private IdRange(IdRange next) {
+            this.next = next;
+            block = new AtomicLong();
+            thread = new WeakReference<Thread>(Thread.currentThread());
         }
     }
 }
@@ -23,11 +23,15 @@
  */
 package com.artemis;
 
+import com.artemis.annotations.Reads;
+import com.artemis.annotations.Writes;
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
 import com.artemis.utils.ImmutableBag;
 
+import java.lang.ref.Reference;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 
 /**
  * The most raw entity system. It should not typically be used, but you can create your own
@@ -37,17 +41,30 @@ import java.util.HashMap;
  * @author Arni Arent
  */
 public abstract class EntitySystem implements EntityObserver {
-    private final int systemIndex;
+    private static final long[] NO_TYPES = new long[0];
+
+    private int systemIndex;
 
     protected World world;
 
     private Bag<Entity> actives;
+    private int[] activeSlots;
 
     private Aspect aspect;
 
-    private BitSet allSet;
-    private BitSet exclusionSet;
-    private BitSet oneSet;
+    private Aspect.Matcher matcher;
+
+    private BitMatrix componentBits;
+    private BitMatrix systemBits;
+
+    private Bag<Archetype> archetypes;
+    private int archetypesChecked;
+
+    private ThreadLocal<Reference<CommandBuffer>> commandBuffers;
+    private int commandBufferOrder;
+
+    private BitSet reads;
+    private BitSet writes;
 
     private boolean passive;
 
@@ -60,12 +77,10 @@ public abstract class EntitySystem implements EntityObserver {
      */
     public EntitySystem(Aspect aspect) {
         actives = new Bag<Entity>();
+        activeSlots = new int[64];
+        archetypes = new Bag<Archetype>();
         this.aspect = aspect;
-        allSet = aspect.getAllSet();
-        exclusionSet = aspect.getExclusionSet();
-        oneSet = aspect.getOneSet();
-        systemIndex = SystemIndexManager.getIndexFor(this.getClass());
-        dummy = allSet.isEmpty() && oneSet.isEmpty(); // This system can't possibly be interested in any entity, so it must be "dummy"
+        dummy = aspect.isEmpty(); // This system can't possibly be interested in any entity, so it must be "dummy"
     }
 
     /**
@@ -139,30 +154,9 @@ public abstract class EntitySystem implements EntityObserver {
             return;
         }
 
-        boolean contains = e.getSystemBits().get(systemIndex);
-        boolean interested = true; // possibly interested, let's try to prove it wrong.
-
-        BitSet componentBits = e.getComponentBits();
-
-        // Check if the entity possesses ALL of the components defined in the aspect.
-        if (!allSet.isEmpty()) {
-            for (int i = allSet.nextSetBit(0); i >= 0; i = allSet.nextSetBit(i + 1)) {
-                if (!componentBits.get(i)) {
-                    interested = false;
-                    break;
-                }
-            }
-        }
-
-        // Check if the entity possesses ANY of the exclusion components, if it does then the system is not interested.
-        if (!exclusionSet.isEmpty() && interested) {
-            interested = !exclusionSet.intersects(componentBits);
-        }
-
-        // Check if the entity possesses ANY of the components in the oneSet. If so, the system is interested.
-        if (!oneSet.isEmpty()) {
-            interested = oneSet.intersects(componentBits);
-        }
+        int id = e.getId();
+        boolean contains = systemBits.get(id, systemIndex);
+        boolean interested = matcher.matches(componentBits, id);
 
         if (interested && !contains) {
             insertToSystem(e);
@@ -171,15 +165,25 @@ public abstract class EntitySystem implements EntityObserver {
         }
     }
 
-    private void removeFromSystem(Entity e) {
-        actives.remove(e);
-        e.getSystemBits().clear(systemIndex);
+    void removeFromSystem(Entity e) {
+        // the last active entity takes the place of the removed one
+        int slot = activeSlots[e.getId()];
+        actives.remove(slot);
+        if (actives.size() > slot) {
+            activeSlots[actives.get(slot).getId()] = slot;
+        }
+        systemBits.clear(e.getId(), systemIndex);
         removed(e);
     }
 
-    private void insertToSystem(Entity e) {
+    void insertToSystem(Entity e) {
+        int id = e.getId();
+        if (id >= activeSlots.length) {
+            activeSlots = Arrays.copyOf(activeSlots, Math.max(id + 1, (activeSlots.length * 3) / 2 + 1));
+        }
+        activeSlots[id] = actives.size();
         actives.add(e);
-        e.getSystemBits().set(systemIndex);
+        systemBits.set(id, systemIndex);
         inserted(e);
     }
 
@@ -195,14 +199,14 @@ public abstract class EntitySystem implements EntityObserver {
 
     @Override
     public final void deleted(Entity e) {
-        if (e.getSystemBits().get(systemIndex)) {
+        if (systemBits.get(e.getId(), systemIndex)) {
             removeFromSystem(e);
         }
     }
 
     @Override
     public final void disabled(Entity e) {
-        if (e.getSystemBits().get(systemIndex)) {
+        if (systemBits.get(e.getId(), systemIndex)) {
             removeFromSystem(e);
         }
     }
@@ -212,8 +216,61 @@ public abstract class EntitySystem implements EntityObserver {
         check(e);
     }
 
+    int getSystemIndex() {
+        return systemIndex;
+    }
+
+    /**
+     * @param componentBits the words of a composition
+     * @return true if entities of the composition are of interest to this system.
+     */
+    boolean isInterested(long[] componentBits) {
+        return !dummy && matcher.matches(componentBits);
+    }
+
+    /**
+     * @return the component types whose presence can change the interest of this system in an entity.
+     */
+    long[] getReferencedTypes() {
+        return dummy ? NO_TYPES : matcher.getReferencedTypes();
+    }
+
+    /**
+     * Check if this system can't be processed concurrently with another one, because one
+     * of them writes a component type the other one accesses, or one of them doesn't
+     * declare the component types it accesses.
+     *
+     * @param other the other system
+     * @return true if both systems must run one after the other.
+     * @see Reads
+     * @see Writes
+     */
+    boolean conflictsWith(EntitySystem other) {
+        if (writes == null || other.writes == null) {
+            return true;
+        }
+        return writes.intersects(other.reads) || other.writes.intersects(reads);
+    }
+
+    /**
+     * Returns the command buffer of this system for the calling thread. Systems processed
+     * concurrently must record changes to entities in it instead of making them directly.
+     *
+     * @return the command buffer.
+     */
+    protected final CommandBuffer getCommandBuffer() {
+        return world.getCommandBuffer(commandBuffers, commandBufferOrder);
+    }
+
     protected final void setWorld(World world) {
         this.world = world;
+        systemIndex = world.getSystemIndex(getClass());
+        matcher = aspect.compile(world.getComponentTypes());
+        compileAccess(world.getComponentTypes());
+        commandBufferOrder = world.nextSystemOrder();
+        commandBuffers = new ThreadLocal<Reference<CommandBuffer>>();
+        componentBits = world.getEntityManager().getComponentBits();
+        systemBits = world.getEntityManager().getSystemBits();
     }
 
     protected boolean isPassive() {
@@ -229,20 +286,53 @@ public abstract class EntitySystem implements EntityObserver {
     }
 
     /**
-     * Used to generate a unique bit for each system.
-     * Only used internally in EntitySystem.
+     * Check if an entity is part of this system.
+     *
+     * @param entityId id of the entity
+     * @return true if this system contains the entity.
      */
-    private static class SystemIndexManager {
-        private static int INDEX = 0;
-        private static HashMap<Class<? extends EntitySystem>, Integer> indices = new HashMap<Class<? extends EntitySystem>, Integer>();
-
-        private static int getIndexFor(Class<? extends EntitySystem> es) {
-            Integer index = indices.get(es);
-            if (index == null) {
-                index = INDEX++;
-                indices.put(es, index);
+    protected final boolean contains(int entityId) {
+        return systemBits.get(entityId, systemIndex);
+    }
+
+    /**
+     * Returns the archetypes whose composition matches the aspect of this system, when
+     * the world uses archetype storage. The chunks of these archetypes hold all entities
+     * that can be part of this system, but can also hold entities that are not, like
+     * disabled entities or entities that have not been added to the world yet.
+     *
+     * @return the matching archetypes.
+     * @see ComponentManager#setArchetypeStorage(boolean)
+     */
+    protected final ImmutableBag<Archetype> getArchetypes() {
+        ImmutableBag<Archetype> all = world.getComponentManager().getArchetypes();
+        if (!dummy) {
+            for (int s = all.size(); s > archetypesChecked; archetypesChecked++) {
+                Archetype archetype = all.get(archetypesChecked);
+                if (matcher.matches(archetype.getComponentBits())) {
+                    archetypes.add(archetype);
+                }
+            }
+        }
+        return archetypes;
+    }
+
+    private void compileAccess(ComponentTypeRegistry types) {
+        Reads declaredReads = getClass().getAnnotation(Reads.class);
+        Writes declaredWrites = getClass().getAnnotation(Writes.class);
+        if (declaredReads != null || declaredWrites != null) {
+            writes = new BitSet();
+            if (declaredWrites != null) {
+                for (Class<? extends Component> type : declaredWrites.value()) {
+                    writes.set(types.getIndexFor(type));
+                }
+            }
+            reads = (BitSet) writes.clone();
+            if (declaredReads != null) {
+                for (Class<? extends Component> type : declaredReads.value()) {
+                    reads.set(types.getIndexFor(type));
+                }
             }
-            return index;
         }
     }
 }
@@ -0,0 +1,134 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.BitMatrix;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.Arrays;
+
+/**
+ * Indexes the systems of a world by the component types their aspects mention, and
+ * remembers the composition of each entity at the time systems were last notified of it.
+ * <p/>
+ * When an entity is notified again, only the systems mentioning one of the component
+ * types added or removed in between can change their interest in it, all other systems
+ * are skipped. The index is rebuilt when a system is added to or removed from the world,
+ * and all entities are then checked against every system mentioning one of their types.
+ */
+final class InterestIndex {
+    private long[][] systemsOfType;
+    private BitMatrix notified;
+    private long[] affected;
+    private boolean valid;
+
+    InterestIndex() {
+        systemsOfType = new long[0][];
+        notified = new BitMatrix();
+        affected = new long[1];
+    }
+
+    /**
+     * Discards the index and the notified compositions, called when a system is
+     * added to or removed from the world.
+     */
+    void invalidate() {
+        valid = false;
+        notified = new BitMatrix();
+    }
+
+    /**
+     * Called when the systems have been notified that an entity is deleted or
+     * disabled, and no longer contain it.
+     *
+     * @param entityId the entity
+     */
+    void forget(int entityId) {
+        notified.clear(entityId);
+    }
+
+    /**
+     * Collects the systems that must re-check an entity, and records its composition
+     * as notified.
+     *
+     * @param componentBits the component matrix
+     * @param entityId      the entity
+     * @param systems       the systems of the world
+     * @return a mask of the system indices to check, or null if no system is affected.
+     */
+    long[] getAffected(BitMatrix componentBits, int entityId, ImmutableBag<EntitySystem> systems) {
+        if (!valid) {
+            build(systems);
+        }
+        Arrays.fill(affected, 0L);
+        boolean any = false;
+        for (int w = 0, s = Math.max(componentBits.getStride(), notified.getStride()); s > w; w++) {
+            long delta = componentBits.getWord(entityId, w) ^ notified.getWord(entityId, w);
+            while (delta != 0L) {
+                int type = (w << 6) + Long.numberOfTrailingZeros(delta);
+                delta &= delta - 1;
+                if (systemsOfType.length > type && systemsOfType[type] != null) {
+                    long[] mask = systemsOfType[type];
+                    for (int i = 0; mask.length > i; i++) {
+                        affected[i] |= mask[i];
+                    }
+                    any = true;
+                }
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        notified.setRow(entityId, componentBits, entityId);
+        return affected;
+    }
+
+    private void build(ImmutableBag<EntitySystem> systems) {
+        int words = 1;
+        for (int i = 0, s = systems.size(); s > i; i++) {
+            words = Math.max(words, (systems.get(i).getSystemIndex() >>> 6) + 1);
+        }
+        affected = new long[words];
+        systemsOfType = new long[0][];
+        for (int i = 0, s = systems.size(); s > i; i++) {
+            EntitySystem system = systems.get(i);
+            long[] types = system.getReferencedTypes();
+            for (int w = 0; types.length > w; w++) {
+                long bits = types[w];
+                while (bits != 0L) {
+                    int type = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (type >= systemsOfType.length) {
+                        systemsOfType = Arrays.copyOf(systemsOfType, type + 1);
+                    }
+                    if (systemsOfType[type] == null) {
+                        systemsOfType[type] = new long[words];
+                    }
+                    systemsOfType[type][system.getSystemIndex() >>> 6] |= 1L << system.getSystemIndex();
+                }
+            }
+        }
+        valid = true;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+/**
+ * Sets the fields annotated with Mapper declared by a class, implemented by the classes
+ * the Mapper annotation processor generates. A generated injector is named after its
+ * class with a _MapperInjector suffix, e.g. Outer_MovementSystem_MapperInjector for
+ * Outer.MovementSystem, listed in META-INF/services/com.artemis.MapperInjector and
+ * loaded with a ServiceLoader. Fields of classes without a generated injector are set
+ * by reflection.
+ *
+ * @param <T> the class declaring the fields
+ * @see com.artemis.annotations.Mapper
+ */
+public interface MapperInjector<T> {
+    /**
+     * @return the class declaring the fields this injector sets.
+     */
+    Class<T> getType();
+
+    /**
+     * Set the mapper fields declared by the class of this injector, inherited fields are
+     * set by the injectors of the superclasses.
+     *
+     * @param target the object to set the fields of
+     * @param world  the world to get the mappers from
+     */
+    void inject(T target, World world);
+}
@@ -0,0 +1,196 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.annotations.Mapper;
+import com.artemis.storage.PackedComponent;
+import com.artemis.utils.Bag;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Sets the Mapper fields of systems, including the fields declared by their superclasses.
+ * Every class of the hierarchy uses its generated MapperInjector when there is one, and
+ * falls back to setting its fields by reflection otherwise. The injector of a class is
+ * looked up once and cached on the class.
+ * <p/>
+ * Generated injectors are listed in META-INF/services/com.artemis.MapperInjector by the
+ * MapperProcessor and loaded with a ServiceLoader, once per class loader. The injectors
+ * of a loader are only held weakly by the loader, and strongly by the cached injections of
+ * its classes, so they don't keep the loader alive.
+ */
+final class MapperInjectors {
+    private static final Injection NONE = new Injection(null, null, null);
+    private static final Map<ClassLoader, Reference<Map<Class<?>, MapperInjector<?>>>> generated =
+            new WeakHashMap<ClassLoader, Reference<Map<Class<?>, MapperInjector<?>>>>();
+    private static final ClassValue<Injection> injections = new ClassValue<Injection>() {
+        @Override
+        protected Injection computeValue(Class<?> type) {
+            Class<?> superclass = type.getSuperclass();
+            Injection parent = superclass != null ? injections.get(superclass) : NONE;
+            ClassLoader loader = type.getClassLoader();
+            Map<Class<?>, MapperInjector<?>> byType = loader != null ? getGenerated(loader) : null;
+            MapperInjector<?> injector = byType != null ? byType.get(type) : null;
+            if (injector == null) {
+                injector = ReflectiveInjector.of(type);
+            }
+            return injector != null ? new Injection(injector, parent, byType) : parent;
+        }
+    };
+
+    private MapperInjectors() {
+    }
+
+    /**
+     * Set all Mapper fields of an object.
+     *
+     * @param target the object
+     * @param world  the world to get the mappers from
+     */
+    @SuppressWarnings("unchecked")
+    static void inject(Object target, World world) {
+        for (Injection injection = injections.get(target.getClass()); injection != NONE; injection = injection.parent) {
+            ((MapperInjector<Object>) injection.injector).inject(target, world);
+        }
+    }
+
+    /**
+     * Check if the Mapper fields declared by a class are set by a generated injector.
+     *
+     * @param type the class
+     * @return true if there is a generated injector for the class.
+     */
+    static boolean isGenerated(Class<?> type) {
+        Injection injection = injections.get(type);
+        return injection != NONE && injection.injector.getType() == type
+                && !(injection.injector instanceof ReflectiveInjector);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static synchronized Map<Class<?>, MapperInjector<?>> getGenerated(ClassLoader loader) {
+        Reference<Map<Class<?>, MapperInjector<?>>> reference = generated.get(loader);
+        Map<Class<?>, MapperInjector<?>> byType = reference != null ? reference.get() : null;
+        if (byType == null) {
+            byType = new HashMap<Class<?>, MapperInjector<?>>();
+            Iterator<MapperInjector> it = ServiceLoader.load(MapperInjector.class, loader).iterator();
+            while (it.hasNext()) {
+                try {
+                    MapperInjector<?> injector = it.next();
+                    byType.put(injector.getType(), injector);
+                } catch (ServiceConfigurationError e) {
+                    // stale entry of a class that has been removed, its fields are set by reflection
+                }
+            }
+            generated.put(loader, new WeakReference<Map<Class<?>, MapperInjector<?>>>(byType));
+        }
+        return byType;
+    }
+
+    private static final class Injection {
+        private final MapperInjector<?> injector;
+        private final Injection parent;
+        // keeps the generated injectors of the loader of the class cached
+        private final Map<Class<?>, MapperInjector<?>> generated;
+
+        private Injection(MapperInjector<?> injector, Injection parent, Map<Class<?>, MapperInjector<?>> generated) {
+            this.injector = injector;
+            this.parent = parent;
+            this.generated = generated;
+        }
+    }
+
+    /*
+     * Sets the Mapper fields declared by a class by reflection.
+     */
+    private static final class ReflectiveInjector implements MapperInjector<Object> {
+        private final Class<Object> type;
+        private final Field[] fields;
+        private final Class<?>[] componentTypes;
+
+        private ReflectiveInjector(Class<Object> type, Field[] fields, Class<?>[] componentTypes) {
+            this.type = type;
+            this.fields = fields;
+            this.componentTypes = componentTypes;
+        }
+
+        @SuppressWarnings("unchecked")
+        static ReflectiveInjector of(Class<?> type) {
+            Bag<Field> fields = new Bag<Field>();
+            for (Field field : type.getDeclaredFields()) {
+                if (field.getAnnotation(Mapper.class) != null && !Modifier.isStatic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+            if (fields.isEmpty()) {
+                return null;
+            }
+
+            Field[] array = new Field[fields.size()];
+            Class<?>[] componentTypes = new Class<?>[fields.size()];
+            for (int i = 0; array.length > i; i++) {
+                Field field = fields.get(i);
+                try {
+                    ParameterizedType genericType = (ParameterizedType) field.getGenericType();
+                    componentTypes[i] = (Class<?>) genericType.getActualTypeArguments()[0];
+                    field.setAccessible(true);
+                } catch (Exception e) {
+                    throw new RuntimeException("Error while setting component mappers", e);
+                }
+                array[i] = field;
+            }
+            return new ReflectiveInjector((Class<Object>) type, array, componentTypes);
+        }
+
+        @Override
+        public Class<Object> getType() {
+            return type;
+        }
+
+        @Override
+        public void inject(Object target, World world) {
+            try {
+                for (int i = 0; fields.length > i; i++) {
+                    Class<?> componentType = componentTypes[i];
+                    if (PackedMapper.class.isAssignableFrom(fields[i].getType())) {
+                        fields[i].set(target, world.getPackedMapper(componentType.asSubclass(PackedComponent.class)));
+                    } else {
+                        fields[i].set(target, world.getMapper(componentType.asSubclass(Component.class)));
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Error while setting component mappers", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.storage.PackedComponent;
+import com.artemis.storage.PackedComponentStorage;
+
+/**
+ * Retrieval of packed components from entities, the PackedComponent counterpart
+ * of the ComponentMapper.
+ * <p/>
+ * Every mapper owns a flyweight that get() and create() point at the fields of the
+ * requested entity, so retrieving a packed component never allocates. The returned
+ * instance is only valid until the next call on the same mapper; use get(Entity, T)
+ * with a flyweight from newFlyweight() to access several entities at the same time.
+ *
+ * @param <A> the class type of the packed component
+ */
+public class PackedMapper<A extends PackedComponent> {
+    private final ComponentType type;
+    private final PackedComponentStorage storage;
+    private final A flyweight;
+
+    private PackedMapper(Class<A> type, World world) {
+        this.type = world.getComponentTypes().getTypeFor(type);
+        this.storage = world.getComponentManager().getPackedStorage(this.type);
+        this.flyweight = storage.newFlyweight();
+    }
+
+    /**
+     * Retrieve the packed component of an entity.
+     *
+     * @param e the entity
+     * @return the flyweight of this mapper pointing at the entity, or null if the entity has no such component.
+     */
+    public A get(Entity e) {
+        return storage.get(e.getId(), flyweight);
+    }
+
+    /**
+     * Retrieve the packed component of an entity into the specified flyweight.
+     *
+     * @param e         the entity
+     * @param flyweight a flyweight created by newFlyweight()
+     * @return the flyweight pointing at the entity, or null if the entity has no such component.
+     */
+    public A get(Entity e, A flyweight) {
+        return storage.get(e.getId(), flyweight);
+    }
+
+    /**
+     * Checks if the entity has this type of component.
+     *
+     * @param e the entity to check
+     * @return true if the entity has this component type, false if it doesn't.
+     */
+    public boolean has(Entity e) {
+        return storage.get(e.getId(), flyweight) != null;
+    }
+
+    /**
+     * Add the packed component to an entity with all its fields set to zero, without
+     * allocating an instance. Like any other component change, call Entity.changedInWorld()
+     * if the entity has already been added to the world.
+     *
+     * @param e the entity
+     * @return the flyweight of this mapper pointing at the new component.
+     */
+    public A create(Entity e) {
+        e.addComponent(storage.create(e.getId(), flyweight), type);
+        return flyweight;
+    }
+
+    /**
+     * @return a new flyweight, to be used with get(Entity, T).
+     */
+    public A newFlyweight() {
+        return storage.newFlyweight();
+    }
+
+    /**
+     * Returns a packed mapper for this type of components.
+     *
+     * @param type  the type of components this mapper uses.
+     * @param world the world that this mapper should use.
+     * @return a new mapper.
+     */
+    public static <T extends PackedComponent> PackedMapper<T> getFor(Class<T> type, World world) {
+        return new PackedMapper<T>(type, world);
+    }
+}
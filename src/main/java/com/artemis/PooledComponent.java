@@ -0,0 +1,43 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+/**
+ * A component that is reused once it has been removed from its entity, instead of
+ * being left to the garbage collector. Every world keeps a pool per pooled component
+ * type: components removed with Entity.removeComponent() or from a deleted entity are
+ * reset and put in the pool, and ComponentMapper.create() takes components from it.
+ * <p/>
+ * Don't keep references to a pooled component after removing it from its entity or
+ * deleting the entity, it will be handed out again.
+ *
+ * @see ComponentMapper#create(Entity)
+ */
+public abstract class PooledComponent extends Component {
+    /**
+     * Restore the state of a newly created component, called when the component is
+     * returned to the pool.
+     */
+    protected abstract void reset();
+}
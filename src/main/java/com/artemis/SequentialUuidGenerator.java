@@ -0,0 +1,59 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates UUIDs from a random per-generator prefix and a counter.
+ * <p/>
+ * Only the prefix is drawn from a SecureRandom, once, when the generator is created.
+ * Every UUID after that costs a single atomic increment, which makes this generator
+ * a lot cheaper than RandomUuidGenerator when many entities need a UUID. The UUIDs
+ * are unique, but not unpredictable, so don't use them as secrets.
+ */
+public class SequentialUuidGenerator implements UuidGenerator {
+    private final long mostSigBits;
+    private final AtomicLong counter;
+
+    public SequentialUuidGenerator() {
+        this(new SecureRandom().nextLong());
+    }
+
+    /**
+     * @param prefix the most significant bits shared by all UUIDs of this generator.
+     */
+    public SequentialUuidGenerator(long prefix) {
+        mostSigBits = (prefix & ~0xF000L) | 0x4000L; // version 4
+        counter = new AtomicLong();
+    }
+
+    @Override
+    public UUID generate() {
+        long count = counter.getAndIncrement();
+        return new UUID(mostSigBits, (count & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L); // IETF variant
+    }
+}
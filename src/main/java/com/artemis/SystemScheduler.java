@@ -0,0 +1,160 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Groups the non-passive systems of a world into levels of systems that can be processed
+ * concurrently, based on the component types they declare to access.
+ * <p/>
+ * A system is placed one level after the last system registered before it that it
+ * conflicts with, so conflicting systems keep their registration order. The systems of
+ * a level are forked on a ForkJoinPool, and a level only starts once the previous
+ * one is done.
+ */
+final class SystemScheduler {
+    private final ImmutableBag<EntitySystem> systems;
+    private Bag<Level> levels;
+    private boolean valid;
+
+    SystemScheduler(ImmutableBag<EntitySystem> systems) {
+        this.systems = systems;
+        levels = new Bag<Level>();
+    }
+
+    /**
+     * Discards the schedule, called when a system is added to or removed from the world.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * @return the number of levels of the schedule.
+     */
+    int getLevelCount() {
+        if (!valid) {
+            build();
+        }
+        return levels.size();
+    }
+
+    /**
+     * Process all non-passive systems.
+     *
+     * @param pool          the pool to process the systems of a level on
+     * @param deterministic true to process the levels one system after the other on the calling thread
+     */
+    void process(ForkJoinPool pool, boolean deterministic) {
+        if (!valid) {
+            build();
+        }
+        for (int i = 0, s = levels.size(); s > i; i++) {
+            Level level = levels.get(i);
+            if (deterministic || level.tasks.length == 1) {
+                for (int j = 0; level.tasks.length > j; j++) {
+                    level.tasks[j].system.process();
+                }
+            } else {
+                level.reinitialize();
+                pool.invoke(level);
+            }
+        }
+    }
+
+    private void build() {
+        Bag<EntitySystem> active = new Bag<EntitySystem>();
+        int[] levelOf = new int[systems.size()];
+        int levelCount = 0;
+        for (int i = 0, s = systems.size(); s > i; i++) {
+            EntitySystem system = systems.get(i);
+            if (system.isPassive()) {
+                continue;
+            }
+            int level = 0;
+            for (int j = 0; active.size() > j; j++) {
+                if (levelOf[j] >= level && system.conflictsWith(active.get(j))) {
+                    level = levelOf[j] + 1;
+                }
+            }
+            levelOf[active.size()] = level;
+            active.add(system);
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        levels = new Bag<Level>(levelCount);
+        for (int level = 0; levelCount > level; level++) {
+            Bag<SystemTask> tasks = new Bag<SystemTask>();
+            for (int j = 0; active.size() > j; j++) {
+                if (levelOf[j] == level) {
+                    tasks.add(new SystemTask(active.get(j)));
+                }
+            }
+            SystemTask[] array = new SystemTask[tasks.size()];
+            for (int j = 0; array.length > j; j++) {
+                array[j] = tasks.get(j);
+            }
+            levels.add(new Level(array));
+        }
+        valid = true;
+    }
+
+    private static final class Level extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SystemTask[] tasks;
+
+        private Level(SystemTask[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; tasks.length > i; i++) {
+                tasks[i].reinitialize();
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private static final class SystemTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final EntitySystem system;
+
+        private SystemTask(EntitySystem system) {
+            this.system = system;
+        }
+
+        @Override
+        protected void compute() {
+            system.process();
+        }
+    }
+}
@@ -23,14 +23,18 @@
  */
 package com.artemis;
 
-import com.artemis.annotations.Mapper;
+import com.artemis.storage.PackedComponent;
 import com.artemis.utils.Bag;
+import com.artemis.utils.BitMatrix;
 import com.artemis.utils.ImmutableBag;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The primary instance for the framework. It contains all the managers.
@@ -42,21 +46,46 @@ import java.util.Map;
  * @author Arni Arent
  */
 public class World {
+    private static final int ADDED = 1;
+    private static final int CHANGED = 1 << 1;
+    private static final int DISABLED = 1 << 2;
+    private static final int ENABLED = 1 << 3;
+    private static final int DELETED = 1 << 4;
+
     private EntityManager em;
     private ComponentManager cm;
 
     public float delta;
-    private Bag<Entity> added;
-    private Bag<Entity> changed;
-    private Bag<Entity> deleted;
-    private Bag<Entity> enable;
-    private Bag<Entity> disable;
+    private Bag<Entity> pending;
+    private int[] pendingEvents;
+    private Bag<Entity> dispatching;
+    private int[] dispatchingEvents;
+    private BitSet dispatchedDeleted;
 
     private Map<Class<? extends Manager>, Manager> managers;
     private Bag<Manager> managersBag;
 
     private Map<Class<?>, EntitySystem> systems;
     private Bag<EntitySystem> systemsBag;
+    private Bag<EntitySystem> systemsByIndex;
+    private CompositionCache compositions;
+    private InterestIndex interests;
+    private SystemScheduler scheduler;
+    private ForkJoinPool systemPool;
+    private boolean deterministic;
+    private int systemOrder;
+
+    private final Bag<CommandBuffer> commandBuffers;
+    private final ThreadLocal<Reference<CommandBuffer>> threadCommandBuffers;
+    private long[] playbackKeys;
+    private int[] playbackBuffers;
+    private int[] playbackCommands;
+
+    private UuidGenerator uuidGenerator;
+
+    private final ComponentTypeRegistry componentTypes;
+    private final ClassIndex systemIndices;
+    private volatile ComponentMapper<?>[] mappers;
 
     public World() {
         managers = new HashMap<Class<? extends Manager>, Manager>();
@@ -64,17 +93,33 @@ public class World {
 
         systems = new HashMap<Class<?>, EntitySystem>();
         systemsBag = new Bag<EntitySystem>();
+        systemsByIndex = new Bag<EntitySystem>();
+        compositions = new CompositionCache();
+        interests = new InterestIndex();
+        scheduler = new SystemScheduler(systemsBag);
 
-        added = new Bag<Entity>();
-        changed = new Bag<Entity>();
-        deleted = new Bag<Entity>();
-        enable = new Bag<Entity>();
-        disable = new Bag<Entity>();
+        commandBuffers = new Bag<CommandBuffer>();
+        threadCommandBuffers = new ThreadLocal<Reference<CommandBuffer>>();
+        playbackKeys = new long[64];
+        playbackBuffers = new int[64];
+        playbackCommands = new int[64];
 
-        cm = new ComponentManager();
-        setManager(cm);
+        pending = new Bag<Entity>();
+        pendingEvents = new int[64];
+        dispatching = new Bag<Entity>();
+        dispatchingEvents = new int[64];
+        dispatchedDeleted = new BitSet();
+
+        uuidGenerator = new RandomUuidGenerator();
+
+        componentTypes = new ComponentTypeRegistry();
+        systemIndices = new ClassIndex();
+        mappers = new ComponentMapper<?>[0];
 
         em = new EntityManager();
+        cm = new ComponentManager();
+
+        setManager(cm);
         setManager(em);
     }
 
@@ -87,7 +132,7 @@ public class World {
         }
 
         for (int i = 0; i < systemsBag.size(); i++) {
-            ComponentMapperInitHelper.config(systemsBag.get(i), this);
+            MapperInjectors.inject(systemsBag.get(i), this);
             systemsBag.get(i).initialize();
         }
     }
@@ -163,13 +208,33 @@ public class World {
         this.delta = delta;
     }
 
+    /**
+     * Returns the generator used for the UUIDs of this world's entities.
+     *
+     * @return the uuid generator.
+     */
+    public UuidGenerator getUuidGenerator() {
+        return uuidGenerator;
+    }
+
+    /**
+     * Set the generator used for the UUIDs of this world's entities. Entities
+     * generate their UUID on first request, so this only affects UUIDs that have
+     * not been requested yet.
+     *
+     * @param uuidGenerator the uuid generator.
+     */
+    public void setUuidGenerator(UuidGenerator uuidGenerator) {
+        this.uuidGenerator = uuidGenerator;
+    }
+
     /**
      * Adds a entity to this world.
      *
      * @param e entity
      */
     public void addEntity(Entity e) {
-        added.add(e);
+        enqueue(e, ADDED);
     }
 
     /**
@@ -180,7 +245,7 @@ public class World {
      * @param e entity
      */
     public void changedEntity(Entity e) {
-        changed.add(e);
+        enqueue(e, CHANGED);
     }
 
     /**
@@ -189,9 +254,7 @@ public class World {
      * @param e entity
      */
     public void deleteEntity(Entity e) {
-        if (!deleted.contains(e)) {
-            deleted.add(e);
-        }
+        enqueue(e, DELETED);
     }
 
     /**
@@ -199,7 +262,7 @@ public class World {
      * Won't do anything unless it was already disabled.
      */
     public void enable(Entity e) {
-        enable.add(e);
+        enqueue(e, ENABLED);
     }
 
     /**
@@ -207,12 +270,43 @@ public class World {
      * continue to exist but won't get processed.
      */
     public void disable(Entity e) {
-        disable.add(e);
+        enqueue(e, DISABLED);
+    }
+
+    /**
+     * Move an entity to another world. The entity is deleted from this world and a new
+     * entity with the same components is added to the target world, disabled if the
+     * entity is disabled, and keeps the UUID of the entity. Both worlds only notify their
+     * managers and systems once, when they are processed next.
+     * <p/>
+     * Component types are matched by class. The component objects are handed over as
+     * they are, packed components are copied into the storage of the target world.
+     * Neither world may be processing while the entity is moved.
+     *
+     * @param target the world to move the entity to
+     * @param e      the entity to move
+     * @return the entity in the target world.
+     */
+    public Entity transferTo(World target, Entity e) {
+        if (target == this) {
+            throw new IllegalArgumentException("Can't transfer an entity to its own world");
+        }
+        Entity moved = target.createEntity();
+        cm.transfer(e, target.getComponentManager(), moved);
+        moved.takeUuid(e);
+        target.addEntity(moved);
+        if (!em.isEnabled(e.getId())) {
+            target.disable(moved);
+        }
+        deleteEntity(e);
+        return moved;
     }
 
     /**
      * Create and return a new or reused entity instance.
      * Will NOT add the entity to the world, use World.addEntity(Entity) for that.
+     * Can be called from any thread, but the entity must then be handed to the thread
+     * processing the world before its components are changed or it is added.
      *
      * @return entity
      */
@@ -230,6 +324,26 @@ public class World {
         return em.getEntity(entityId);
     }
 
+    /**
+     * Check if the entity a handle was taken from is still in this world.
+     *
+     * @param handle the handle, see Entity.getHandle().
+     * @return true if the entity is alive.
+     */
+    public boolean isAlive(long handle) {
+        return em.isAlive(handle);
+    }
+
+    /**
+     * Get the entity a handle was taken from.
+     *
+     * @param handle the handle, see Entity.getHandle().
+     * @return the entity, or null if it has been deleted since the handle was taken.
+     */
+    public Entity resolve(long handle) {
+        return em.getEntity(handle);
+    }
+
     /**
      * Gives you all the systems in this world for possible iteration.
      *
@@ -262,6 +376,10 @@ public class World {
 
         systems.put(system.getClass(), system);
         systemsBag.add(system);
+        systemsByIndex.set(system.getSystemIndex(), system);
+        compositions.invalidate();
+        interests.invalidate();
+        scheduler.invalidate();
 
         return system;
     }
@@ -274,17 +392,85 @@ public class World {
     public void deleteSystem(EntitySystem system) {
         systems.remove(system.getClass());
         systemsBag.remove(system);
+        systemsByIndex.set(system.getSystemIndex(), null);
+        // a system of the same class added later gets the same index
+        em.getSystemBits().clearColumn(system.getSystemIndex());
+        compositions.invalidate();
+        interests.invalidate();
+        scheduler.invalidate();
+    }
+
+    /**
+     * Removes a deleted or disabled entity from all systems containing it.
+     *
+     * @param e the entity
+     */
+    private void removeFromSystems(Entity e) {
+        int id = e.getId();
+        BitMatrix systemBits = em.getSystemBits();
+        for (int index = systemBits.nextSetBit(id, 0); index >= 0; index = systemBits.nextSetBit(id, index + 1)) {
+            EntitySystem system = systemsByIndex.get(index);
+            if (system != null) {
+                system.removeFromSystem(e);
+            }
+        }
+        interests.forget(id);
     }
 
-    private void notifySystems(Performer performer, Entity e) {
-        for (int i = 0, s = systemsBag.size(); s > i; i++) {
-            performer.perform(systemsBag.get(i), e);
+    /**
+     * Inserts the entity into the systems interested in its composition, and removes
+     * it from the systems that no longer are. Only the systems mentioning a component
+     * type added or removed since the entity was last notified are checked.
+     *
+     * @param e the entity
+     */
+    private void updateSystems(Entity e) {
+        int id = e.getId();
+        long[] affected = interests.getAffected(em.getComponentBits(), id, systemsBag);
+        if (affected == null) {
+            return;
+        }
+        long[] interested = compositions.getSystems(compositions.getComposition(em.getComponentBits(), id), systemsBag);
+        BitMatrix systemBits = em.getSystemBits();
+        for (int w = 0; affected.length > w; w++) {
+            long wanted = interested.length > w ? interested[w] : 0L;
+            long diff = (systemBits.getWord(id, w) ^ wanted) & affected[w];
+            while (diff != 0L) {
+                int bit = Long.numberOfTrailingZeros(diff);
+                diff &= diff - 1;
+                EntitySystem system = systemsByIndex.get((w << 6) + bit);
+                if (system == null) {
+                    continue;
+                }
+                if ((wanted & (1L << bit)) != 0L) {
+                    system.insertToSystem(e);
+                } else {
+                    system.removeFromSystem(e);
+                }
+            }
         }
     }
 
-    private void notifyManagers(Performer performer, Entity e) {
+    private void notifyManagers(int event, Entity e) {
         for (int a = 0; managersBag.size() > a; a++) {
-            performer.perform(managersBag.get(a), e);
+            Manager manager = managersBag.get(a);
+            switch (event) {
+                case ADDED:
+                    manager.added(e);
+                    break;
+                case CHANGED:
+                    manager.changed(e);
+                    break;
+                case DISABLED:
+                    manager.disabled(e);
+                    break;
+                case ENABLED:
+                    manager.enabled(e);
+                    break;
+                default:
+                    manager.deleted(e);
+                    break;
+            }
         }
     }
 
@@ -299,105 +485,384 @@ public class World {
     }
 
     /**
-     * Performs an action on each entity.
+     * Records a lifecycle event of an entity. Events of the same entity are merged until
+     * they are dispatched, enabling the entity cancels disabling it and vice versa.
      *
-     * @param entities
-     * @param performer
+     * @param e     the entity
+     * @param event one of the event constants
      */
-    private void check(Bag<Entity> entities, Performer performer) {
-        if (!entities.isEmpty()) {
-            for (int i = 0; entities.size() > i; i++) {
-                Entity e = entities.get(i);
-                notifyManagers(performer, e);
-                notifySystems(performer, e);
-            }
-            entities.clear();
+    private void enqueue(Entity e, int event) {
+        int id = e.getId();
+        if (id >= pendingEvents.length) {
+            pendingEvents = Arrays.copyOf(pendingEvents, Math.max(id + 1, (pendingEvents.length * 3) / 2 + 1));
         }
+        int events = pendingEvents[id];
+        if (events == 0) {
+            pending.add(e);
+        }
+        if (event == ENABLED) {
+            events &= ~DISABLED;
+        } else if (event == DISABLED) {
+            events &= ~ENABLED;
+        }
+        pendingEvents[id] = events | event;
     }
 
     /**
-     * Process all non-passive systems.
+     * Reduces the merged events of an entity to the transitions that still matter: a
+     * deleted entity is only deleted, even if it was added in the same tick, added and
+     * enabled entities are fully checked so they don't need to be changed, and enabling
+     * or disabling only happens if the entity is not in that state already.
+     *
+     * @param id     the entity id
+     * @param events the merged events
+     * @return the events to dispatch.
      */
-    public void process() {
-        check(added, new Performer() {
-            @Override
-            public void perform(EntityObserver observer, Entity e) {
-                observer.added(e);
+    private int resolve(int id, int events) {
+        if ((events & DELETED) != 0) {
+            return DELETED;
+        }
+        if ((events & ADDED) != 0) {
+            events &= ~CHANGED;
+        }
+        if ((events & DISABLED) != 0) {
+            events &= ~CHANGED;
+            if (!em.isEnabled(id)) {
+                events &= ~DISABLED;
             }
-        });
-
-        check(changed, new Performer() {
-            @Override
-            public void perform(EntityObserver observer, Entity e) {
-                observer.changed(e);
+        }
+        if ((events & ENABLED) != 0) {
+            if (em.isEnabled(id)) {
+                events &= ~ENABLED;
+            } else {
+                events &= ~CHANGED;
             }
-        });
+        }
+        return events;
+    }
 
-        check(disable, new Performer() {
-            @Override
-            public void perform(EntityObserver observer, Entity e) {
-                observer.disabled(e);
+    /**
+     * Notifies the managers and systems of an event for the entities being dispatched
+     * that have it.
+     *
+     * @param event one of the event constants
+     */
+    private void check(int event) {
+        for (int i = 0; dispatching.size() > i; i++) {
+            Entity e = dispatching.get(i);
+            if ((dispatchingEvents[e.getId()] & event) != 0) {
+                notifyManagers(event, e);
+                if (event == DISABLED || event == DELETED) {
+                    removeFromSystems(e);
+                } else if (event != CHANGED || em.isEnabled(e.getId())) {
+                    // disabled entities stay out of the systems, enabling them re-checks them fully
+                    updateSystems(e);
+                }
             }
-        });
+        }
+    }
 
-        check(enable, new Performer() {
-            @Override
-            public void perform(EntityObserver observer, Entity e) {
-                observer.enabled(e);
+    /**
+     * Dispatches the queued lifecycle events, first all additions, then changes,
+     * disabling, enabling and deletions. Events queued while dispatching are dispatched
+     * in a following wave, until no events are left.
+     */
+    private void dispatchEvents() {
+        while (!pending.isEmpty()) {
+            Bag<Entity> entities = pending;
+            pending = dispatching;
+            dispatching = entities;
+            int[] events = pendingEvents;
+            pendingEvents = dispatchingEvents;
+            dispatchingEvents = events;
+
+            for (int i = 0; dispatching.size() > i; i++) {
+                Entity e = dispatching.get(i);
+                int id = e.getId();
+                if (dispatchedDeleted.get(id) || isStale(e)) {
+                    // deleted in an earlier wave, or an old reference to a deleted entity
+                    dispatchingEvents[id] = 0;
+                } else {
+                    dispatchingEvents[id] = resolve(id, dispatchingEvents[id]);
+                }
             }
-        });
 
-        check(deleted, new Performer() {
-            @Override
-            public void perform(EntityObserver observer, Entity e) {
-                observer.deleted(e);
+            check(ADDED);
+            check(CHANGED);
+            check(DISABLED);
+            check(ENABLED);
+            check(DELETED);
+
+            for (int i = 0; dispatching.size() > i; i++) {
+                int id = dispatching.get(i).getId();
+                if (dispatchingEvents[id] == DELETED) {
+                    dispatchedDeleted.set(id);
+                }
+                dispatchingEvents[id] = 0;
             }
-        });
+            dispatching.clear();
+        }
+        dispatchedDeleted.clear();
+    }
 
-        cm.clean();
+    private boolean isStale(Entity e) {
+        return EntityHandle.getGeneration(e.getHandle()) != em.getGeneration(e.getId());
+    }
+
+    /**
+     * Returns the command buffer of the calling thread, to record changes to entities that
+     * are made when the world is processed next. Systems should use
+     * EntitySystem.getCommandBuffer() instead, so their commands are played back in
+     * system order.
+     *
+     * @return the command buffer of the calling thread.
+     */
+    public CommandBuffer getCommandBuffer() {
+        return getCommandBuffer(threadCommandBuffers, Integer.MAX_VALUE);
+    }
 
-        for (int i = 0; systemsBag.size() > i; i++) {
-            EntitySystem system = systemsBag.get(i);
-            if (!system.isPassive()) {
-                system.process();
+    /**
+     * Returns the command buffer of the calling thread held by a thread local, creating it
+     * on first use. The thread local only holds the buffer weakly, the buffer references
+     * this world, so a thread outliving the world must not keep it reachable.
+     *
+     * @param buffers the buffers of a system, or of the world
+     * @param order   the order of the buffer in the playback
+     * @return the command buffer of the calling thread.
+     */
+    CommandBuffer getCommandBuffer(ThreadLocal<Reference<CommandBuffer>> buffers, int order) {
+        Reference<CommandBuffer> reference = buffers.get();
+        CommandBuffer buffer = reference != null ? reference.get() : null;
+        if (buffer == null) {
+            buffer = newCommandBuffer(order);
+            buffers.set(new WeakReference<CommandBuffer>(buffer));
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates a command buffer and registers it for playback.
+     *
+     * @param order the order of the buffer in the playback
+     * @return the new buffer.
+     */
+    CommandBuffer newCommandBuffer(int order) {
+        CommandBuffer buffer = new CommandBuffer(this, order);
+        synchronized (commandBuffers) {
+            int i = commandBuffers.size();
+            commandBuffers.add(buffer);
+            // keep the buffers sorted by order, buffers of the same order in creation order
+            for (; i > 0 && commandBuffers.get(i - 1).getOrder() > order; i--) {
+                commandBuffers.set(i, commandBuffers.get(i - 1));
             }
+            commandBuffers.set(i, buffer);
         }
+        return buffer;
     }
 
     /**
-     * Retrieves a ComponentMapper instance for fast retrieval of components from entities.
+     * Returns the component types of this world. The indices of the types are specific
+     * to this world, so the bits of its entities only span the types it uses.
      *
-     * @param type of component to get mapper for.
-     * @return mapper for specified component type.
+     * @return the component type registry.
      */
-    public <T extends Component> ComponentMapper<T> getMapper(Class<T> type) {
-        return ComponentMapper.getFor(type, this);
+    public ComponentTypeRegistry getComponentTypes() {
+        return componentTypes;
     }
 
-    /*
-     * Only used internally to maintain clean code.
+    /**
+     * @param type the class of a system
+     * @return the index of the bit of the system class in the system bits of entities.
      */
-    private interface Performer {
-        void perform(EntityObserver observer, Entity e);
+    int getSystemIndex(Class<? extends EntitySystem> type) {
+        return systemIndices.getIndex(type);
     }
 
-    private static class ComponentMapperInitHelper {
-        public static void config(Object target, World world) {
-            try {
-                Class<?> clazz = target.getClass();
-                for (Field field : clazz.getDeclaredFields()) {
-                    Mapper annotation = field.getAnnotation(Mapper.class);
-                    if (annotation != null && Mapper.class.isAssignableFrom(Mapper.class)) {
-                        ParameterizedType genericType = (ParameterizedType) field.getGenericType();
-                        Class componentType = (Class) genericType.getActualTypeArguments()[0];
+    /**
+     * @return the order of the next system added, for the playback of command buffers.
+     */
+    int nextSystemOrder() {
+        return systemOrder++;
+    }
 
-                        field.setAccessible(true);
-                        field.set(target, world.getMapper(componentType));
+    /**
+     * Plays back the command buffers, the buffers of each system sorted by origin entity
+     * and recording order.
+     */
+    private void playCommandBuffers() {
+        synchronized (commandBuffers) {
+            for (int first = 0, s = commandBuffers.size(); s > first; ) {
+                int order = commandBuffers.get(first).getOrder();
+                int count = 0;
+                int last = first;
+                for (; s > last && commandBuffers.get(last).getOrder() == order; last++) {
+                    count += commandBuffers.get(last).detach();
+                }
+                if (count > 0) {
+                    if (count > playbackKeys.length) {
+                        int capacity = Math.max(count, playbackKeys.length * 2);
+                        playbackKeys = new long[capacity];
+                        playbackBuffers = new int[capacity];
+                        playbackCommands = new int[capacity];
                     }
+                    int n = 0;
+                    for (int b = first; last > b; b++) {
+                        CommandBuffer buffer = commandBuffers.get(b);
+                        for (int c = 0, size = buffer.getPlaybackSize(); size > c; c++) {
+                            playbackKeys[n] = ((long) (buffer.getOrigin(c) + 1) << 32) | n;
+                            playbackBuffers[n] = b;
+                            playbackCommands[n] = c;
+                            n++;
+                        }
+                    }
+                    Arrays.sort(playbackKeys, 0, n);
+                    for (int i = 0; n > i; i++) {
+                        int entry = (int) playbackKeys[i];
+                        commandBuffers.get(playbackBuffers[entry]).play(playbackCommands[entry]);
+                    }
+                }
+                for (int b = first; last > b; b++) {
+                    commandBuffers.get(b).release();
+                }
+                first = last;
+            }
+
+            // drop the buffers of threads that have died, keeping the order of the others
+            int kept = 0;
+            for (int i = 0, s = commandBuffers.size(); s > i; i++) {
+                CommandBuffer buffer = commandBuffers.get(i);
+                if (!buffer.isAbandoned()) {
+                    commandBuffers.set(kept++, buffer);
+                }
+            }
+            while (commandBuffers.size() > kept) {
+                commandBuffers.removeLast();
+            }
+        }
+    }
+
+    /**
+     * @return the number of command buffers registered for playback.
+     */
+    int getCommandBufferCount() {
+        synchronized (commandBuffers) {
+            return commandBuffers.size();
+        }
+    }
+
+    /**
+     * Process all non-passive systems.
+     */
+    public void process() {
+        playCommandBuffers();
+        dispatchEvents();
+
+        cm.clean();
+        em.clean();
+
+        if (systemPool != null) {
+            scheduler.process(systemPool, deterministic);
+        } else {
+            for (int i = 0; systemsBag.size() > i; i++) {
+                EntitySystem system = systemsBag.get(i);
+                if (!system.isPassive()) {
+                    system.process();
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Error while setting component mappers", e);
             }
         }
     }
+
+    /**
+     * Returns the pool systems are processed on, null if they are processed one after
+     * the other on the thread calling process().
+     *
+     * @return the pool, or null.
+     */
+    public ForkJoinPool getSystemPool() {
+        return systemPool;
+    }
+
+    /**
+     * Process systems that don't conflict concurrently on a ForkJoinPool. Systems declare
+     * the component types they access with the Reads and Writes annotations, systems that
+     * declare neither are assumed to access everything. A system runs after every system
+     * registered before it that writes a type it accesses or accesses a type it writes,
+     * other systems may run at the same time.
+     * <p/>
+     * Systems processed concurrently may read and write the fields of the components they
+     * declared, but must not create or delete entities, add or remove components or
+     * enable or disable entities directly. They can record such changes in their command
+     * buffer instead, see EntitySystem.getCommandBuffer(), or not declare their access
+     * so they run on their own.
+     *
+     * @param systemPool the pool, or null to process systems one after the other in the
+     *                   order they were added.
+     * @see com.artemis.annotations.Reads
+     * @see com.artemis.annotations.Writes
+     */
+    public void setSystemPool(ForkJoinPool systemPool) {
+        this.systemPool = systemPool;
+    }
+
+    /**
+     * Check if systems are processed on the calling thread even when a system pool is set.
+     *
+     * @return true if the deterministic mode is on.
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * In deterministic mode, systems are processed in the order of the concurrent schedule
+     * but one after the other on the calling thread, so runs can be reproduced exactly
+     * without changing the order the systems are processed in. Has no effect without a
+     * system pool.
+     *
+     * @param deterministic true to process systems on the calling thread.
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Retrieves a ComponentMapper instance for fast retrieval of components from entities.
+     * The mapper is created once per type, later calls return the same mapper without
+     * taking a lock, from any thread.
+     *
+     * @param type of component to get mapper for.
+     * @return mapper for specified component type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Component> ComponentMapper<T> getMapper(Class<T> type) {
+        int index = componentTypes.getIndexFor(type);
+        ComponentMapper<?>[] mappers = this.mappers;
+        if (index < mappers.length && mappers[index] != null) {
+            return (ComponentMapper<T>) mappers[index];
+        }
+        return createMapper(type, index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T extends Component> ComponentMapper<T> createMapper(Class<T> type, int index) {
+        ComponentMapper<?>[] mappers = this.mappers;
+        if (index < mappers.length && mappers[index] != null) {
+            return (ComponentMapper<T>) mappers[index];
+        }
+        ComponentMapper<T> mapper = new ComponentMapper<T>(type, this);
+        mappers = Arrays.copyOf(mappers, Math.max(mappers.length, index + 1));
+        mappers[index] = mapper;
+        this.mappers = mappers;
+        return mapper;
+    }
+
+    /**
+     * Retrieves a PackedMapper instance for retrieval of packed components from entities.
+     *
+     * @param type of packed component to get mapper for.
+     * @return mapper for specified packed component type.
+     */
+    public <T extends PackedComponent> PackedMapper<T> getPackedMapper(Class<T> type) {
+        return PackedMapper.getFor(type, this);
+    }
 }
@@ -0,0 +1,358 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis;
+
+import com.artemis.utils.Bag;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ticks many independent worlds concurrently on a ForkJoinPool, one task per world,
+ * so a few threads can host many worlds and idle threads steal the worlds of busy ones.
+ * <p/>
+ * Every world can be given a budget, the time a tick of the world should take at most.
+ * The time a tick runs over its budget is added to the debt of the world, and a world in
+ * debt skips its next ticks until the budget of the skipped ticks has paid the debt off,
+ * so a world that keeps overrunning gets fewer ticks instead of slowing down all others.
+ * The delta of skipped ticks is added to the next tick the world runs.
+ * <p/>
+ * Worlds must only be added and removed between ticks, on the thread calling tick().
+ * The statistics of a world are up to date once tick() returns.
+ */
+public final class WorldExecutor {
+    /**
+     * A world never skips more than this many ticks in a row, however long a tick took.
+     */
+    public static final int MAX_SKIPPED = 4;
+
+    private static final double SMOOTHING = 0.1;
+
+    private final ForkJoinPool pool;
+    private final Bag<Shard> shards;
+    private Shard[] running;
+
+    /**
+     * Ticks worlds on a new pool with one thread per available processor.
+     */
+    public WorldExecutor() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Ticks worlds on the given pool.
+     *
+     * @param pool the pool to run the ticks of the worlds on
+     */
+    public WorldExecutor(ForkJoinPool pool) {
+        this.pool = pool;
+        shards = new Bag<Shard>();
+        running = new Shard[0];
+    }
+
+    /**
+     * @return the pool the worlds are ticked on.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Add a world without a budget, it is ticked every time.
+     *
+     * @param world the world to tick
+     * @return the shard of the world, holding its budget and statistics.
+     */
+    public Shard add(World world) {
+        return add(world, 0L);
+    }
+
+    /**
+     * Add a world with a budget.
+     *
+     * @param world  the world to tick
+     * @param budget the time a tick of the world should take at most, in nanoseconds,
+     *               or 0 to never skip a tick of the world
+     * @return the shard of the world, holding its budget and statistics.
+     */
+    public Shard add(World world, long budget) {
+        if (getShard(world) != null) {
+            throw new IllegalArgumentException("World has already been added");
+        }
+        Shard shard = new Shard(world);
+        shard.setBudget(budget);
+        shards.add(shard);
+        return shard;
+    }
+
+    /**
+     * Remove a world, it is not ticked anymore.
+     *
+     * @param world the world to remove
+     * @return true if the world had been added.
+     */
+    public boolean remove(World world) {
+        Shard shard = getShard(world);
+        return shard != null && shards.remove(shard);
+    }
+
+    /**
+     * Returns the shard of a world.
+     *
+     * @param world the world
+     * @return the shard of the world, or null if it has not been added.
+     */
+    public Shard getShard(World world) {
+        for (int i = 0; shards.size() > i; i++) {
+            if (shards.get(i).world == world) {
+                return shards.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the shards of all worlds.
+     */
+    public ImmutableBag<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Tick every world that is not in debt once, setting its delta and processing it,
+     * and wait for all of them to finish. Worlds that took the longest to tick on
+     * average are started first.
+     *
+     * @param delta the time passed since the last tick
+     */
+    public void tick(float delta) {
+        int count = 0;
+        if (running.length < shards.size()) {
+            running = new Shard[shards.size()];
+        }
+        for (int i = 0; shards.size() > i; i++) {
+            Shard shard = shards.get(i);
+            shard.delta += delta;
+            if (shard.debt > 0L) {
+                shard.debt = Math.max(0L, shard.debt - shard.budget);
+                shard.skipped++;
+                continue;
+            }
+            // insertion sort by descending average, there are few worlds
+            int j = count++;
+            while (j > 0 && running[j - 1].average < shard.average) {
+                running[j] = running[j - 1];
+                j--;
+            }
+            running[j] = shard;
+        }
+
+        try {
+            if (count == 1) {
+                running[0].run();
+            } else if (count > 1) {
+                pool.invoke(new Tick(running, count));
+            }
+        } finally {
+            for (int i = 0; count > i; i++) {
+                running[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Shuts the pool down, worlds can't be ticked afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static final class Tick extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Shard[] shards;
+        private final int count;
+
+        private Tick(Shard[] shards, int count) {
+            this.shards = shards;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute() {
+            // forked in ascending order, so thieves take the most expensive worlds first
+            for (int i = 1; count > i; i++) {
+                shards[i].task.reinitialize();
+                shards[i].task.fork();
+            }
+            try {
+                shards[0].run();
+            } finally {
+                for (int i = count - 1; i > 0; i--) {
+                    if (shards[i].task.tryUnfork()) {
+                        shards[i].task.quietlyInvoke();
+                    } else {
+                        shards[i].task.quietlyJoin();
+                    }
+                }
+            }
+            for (int i = 1; count > i; i++) {
+                shards[i].task.join();
+            }
+        }
+    }
+
+    private static final class ShardTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Shard shard;
+
+        private ShardTask(Shard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        protected void compute() {
+            shard.run();
+        }
+    }
+
+    /**
+     * A world ticked by a WorldExecutor, with its budget and tick statistics.
+     * Times are in nanoseconds.
+     */
+    public static final class Shard {
+        private final World world;
+        private final ShardTask task;
+        private long budget;
+        private long debt;
+        private float delta;
+
+        private long ticks;
+        private long skipped;
+        private long overruns;
+        private long last;
+        private long max;
+        private double average;
+
+        private Shard(World world) {
+            this.world = world;
+            task = new ShardTask(this);
+        }
+
+        private void run() {
+            world.setDelta(delta);
+            delta = 0f;
+
+            long start = System.nanoTime();
+            world.process();
+            long time = System.nanoTime() - start;
+
+            last = time;
+            max = Math.max(max, time);
+            average = ticks == 0 ? time : average + (time - average) * SMOOTHING;
+            ticks++;
+            if (budget > 0L && time > budget) {
+                overruns++;
+                debt = Math.min(debt + time - budget, budget * MAX_SKIPPED);
+            }
+        }
+
+        public World getWorld() {
+            return world;
+        }
+
+        /**
+         * @return the time a tick should take at most, 0 if the world never skips a tick.
+         */
+        public long getBudget() {
+            return budget;
+        }
+
+        /**
+         * Set the time a tick should take at most.
+         *
+         * @param budget the budget, or 0 to never skip a tick of the world
+         */
+        public void setBudget(long budget) {
+            if (budget < 0L) {
+                throw new IllegalArgumentException("Negative budget: " + budget);
+            }
+            this.budget = budget;
+            if (budget == 0L) {
+                debt = 0L;
+            }
+        }
+
+        /**
+         * @return the time the world still has to pay off before it is ticked again.
+         */
+        public long getDebt() {
+            return debt;
+        }
+
+        /**
+         * @return the number of ticks the world ran.
+         */
+        public long getTickCount() {
+            return ticks;
+        }
+
+        /**
+         * @return the number of ticks the world skipped to pay off its debt.
+         */
+        public long getSkippedCount() {
+            return skipped;
+        }
+
+        /**
+         * @return the number of ticks that took longer than the budget.
+         */
+        public long getOverrunCount() {
+            return overruns;
+        }
+
+        /**
+         * @return the time the last tick took.
+         */
+        public long getLastTickTime() {
+            return last;
+        }
+
+        /**
+         * @return the longest time a tick took.
+         */
+        public long getMaxTickTime() {
+            return max;
+        }
+
+        /**
+         * @return the moving average of the time a tick takes.
+         */
+        public long getAverageTickTime() {
+            return (long) average;
+        }
+    }
+}
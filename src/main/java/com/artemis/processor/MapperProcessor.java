@@ -0,0 +1,277 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.processor;
+
+import com.artemis.annotations.Mapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a MapperInjector for every class declaring fields annotated with Mapper, so
+ * the World sets these fields without reflection. The injectors are written next to the
+ * class, named after it with a _MapperInjector suffix, and listed in
+ * META-INF/services/com.artemis.MapperInjector.
+ * <p/>
+ * An injector can only set fields the class of the injector can access, classes with a
+ * private or final Mapper field, or that are private themselves, get no injector and their
+ * fields are still set by reflection. Static Mapper fields are ignored, as they are by
+ * reflection.
+ */
+@SupportedAnnotationTypes("com.artemis.annotations.Mapper")
+public class MapperProcessor extends AbstractProcessor {
+    private static final String INJECTOR = "com.artemis.MapperInjector";
+    private static final String SERVICES = "META-INF/services/" + INJECTOR;
+    private static final String SUFFIX = "_MapperInjector";
+
+    private final Set<String> injectors = new TreeSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (round.processingOver()) {
+            if (!injectors.isEmpty()) {
+                writeServices();
+            }
+            return false;
+        }
+
+        Map<TypeElement, List<VariableElement>> fieldsByType = new LinkedHashMap<TypeElement, List<VariableElement>>();
+        for (Element element : round.getElementsAnnotatedWith(Mapper.class)) {
+            if (element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element.getEnclosingElement();
+            List<VariableElement> fields = fieldsByType.get(type);
+            if (fields == null) {
+                fields = new ArrayList<VariableElement>();
+                fieldsByType.put(type, fields);
+            }
+            fields.add((VariableElement) element);
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : fieldsByType.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, List<VariableElement> fields) {
+        List<String> statements = new ArrayList<String>();
+        // false if the fields must be set by reflection, as generated code can't set all of them
+        boolean accessible = isAccessible(type);
+        for (VariableElement field : fields) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC)) {
+                // never set, like by reflection
+                warning(field, "@Mapper is ignored on static fields");
+                continue;
+            }
+            String statement = getStatement(field);
+            if (statement == null) {
+                warning(field, "@Mapper fields must be a ComponentMapper or PackedMapper of a component class");
+                accessible = false;
+                continue;
+            }
+            if (modifiers.contains(Modifier.FINAL)) {
+                warning(field, "@Mapper fields should not be final");
+                accessible = false;
+            } else if (modifiers.contains(Modifier.PRIVATE)) {
+                accessible = false;
+            }
+            statements.add(statement);
+        }
+        if (statements.isEmpty()) {
+            return;
+        }
+        if (!accessible) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "@Mapper fields of " + type.getQualifiedName() + " are set by reflection, "
+                    + "the class is private or one of its fields can't be set by generated code", type);
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + SUFFIX;
+        String typeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                    packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+            PrintWriter out = new PrintWriter(file.openWriter());
+            try {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Sets the @Mapper fields declared by " + typeName + ", generated by "
+                        + MapperProcessor.class.getName() + ".");
+                out.println(" */");
+                if (!type.getTypeParameters().isEmpty()) {
+                    out.println("@SuppressWarnings(\"rawtypes\")");
+                }
+                out.println("public final class " + simpleName + " implements " + INJECTOR + "<" + typeName + "> {");
+                out.println("    @Override");
+                out.println("    public Class<" + typeName + "> getType() {");
+                out.println("        return " + typeName + ".class;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public void inject(" + typeName + " target, com.artemis.World world) {");
+                for (String statement : statements) {
+                    out.println("        " + statement);
+                }
+                out.println("    }");
+                out.println("}");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            error(type, "Could not write the mapper injector: " + e.getMessage());
+            return;
+        }
+        injectors.add(packageName.isEmpty() ? simpleName : packageName + "." + simpleName);
+    }
+
+    private String getStatement(VariableElement field) {
+        TypeMirror fieldType = field.asType();
+        if (fieldType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) fieldType;
+        String mapperName = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+        String getter;
+        if (mapperName.equals("com.artemis.ComponentMapper")) {
+            getter = "getMapper";
+        } else if (mapperName.equals("com.artemis.PackedMapper")) {
+            getter = "getPackedMapper";
+        } else {
+            return null;
+        }
+        if (declared.getTypeArguments().size() != 1
+                || declared.getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        String componentName = processingEnv.getTypeUtils().erasure(declared.getTypeArguments().get(0)).toString();
+        return "target." + field.getSimpleName() + " = world." + getter + "(" + componentName + ".class);";
+    }
+
+    /*
+     * A class in the same package can only access the type if neither it nor any of the
+     * types it is nested in is private, and it is not local or anonymous.
+     */
+    private static boolean isAccessible(TypeElement type) {
+        Element element = type;
+        while (element instanceof TypeElement) {
+            TypeElement enclosing = (TypeElement) element;
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)
+                    || enclosing.getNestingKind() == NestingKind.LOCAL
+                    || enclosing.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = enclosing.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /*
+     * Keeps the injectors listed by an earlier, incremental, compilation.
+     */
+    private void writeServices() {
+        Set<String> all = new TreeSet<String>(injectors);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            BufferedReader in = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        all.add(line);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // no earlier compilation
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            Writer out = file.openWriter();
+            try {
+                for (String injector : all) {
+                    out.write(injector);
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + SERVICES + ": " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+}
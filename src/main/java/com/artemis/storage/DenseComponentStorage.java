@@ -0,0 +1,79 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.storage;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+import com.artemis.utils.Bag;
+
+/**
+ * Stores components in an array indexed by entity id. The fastest lookups, but the
+ * array is as large as the highest id of an entity that ever had the component.
+ * This is the default storage.
+ */
+public class DenseComponentStorage implements ComponentStorage {
+    private Bag<Component> components;
+    private int size;
+
+    public DenseComponentStorage() {
+        components = new Bag<Component>();
+    }
+
+    @Override
+    public Component get(int entityId) {
+        if (components.isIndexWithinBounds(entityId)) {
+            return components.get(entityId);
+        }
+        return null;
+    }
+
+    @Override
+    public void set(int entityId, Component component) {
+        components.ensureCapacity(entityId);
+        if (components.get(entityId) == null) {
+            size++;
+        }
+        components.set(entityId, component);
+    }
+
+    @Override
+    public void remove(int entityId) {
+        if (components.isIndexWithinBounds(entityId) && components.get(entityId) != null) {
+            components.set(entityId, null);
+            size--;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of entity ids the storage can hold without growing.
+     */
+    public int getCapacity() {
+        return components.getCapacity();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.storage;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+
+import java.util.Arrays;
+
+/**
+ * Stores components in an open addressing hash table keyed by entity id. Memory
+ * is proportional to the number of components rather than the highest entity id,
+ * which makes it the best fit for types that only a few entities possess.
+ * Lookups cost a hash and a short linear probe.
+ */
+public class HashedComponentStorage implements ComponentStorage {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private Component[] values;
+    private int mask;
+    private int size;
+
+    public HashedComponentStorage() {
+        this(16);
+    }
+
+    /**
+     * @param capacity initial number of components the storage can hold without growing.
+     */
+    public HashedComponentStorage(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 4) * 2 - 1) << 1;
+        allocate(tableSize);
+    }
+
+    @Override
+    public Component get(int entityId) {
+        for (int i = hash(entityId) & mask; ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == entityId) {
+                return values[i];
+            }
+            if (key == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void set(int entityId, Component component) {
+        int i = hash(entityId) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == entityId) {
+                values[i] = component;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = entityId;
+        values[i] = component;
+        if (++size > (mask + 1) >>> 1) {
+            rehash();
+        }
+    }
+
+    @Override
+    public void remove(int entityId) {
+        int i = hash(entityId) & mask;
+        while (keys[i] != entityId) {
+            if (keys[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Shift the following entries of the probe sequence back, so no tombstones are needed
+        int gap = i;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        Component[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; oldKeys.length > i; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = hash(oldKeys[i]) & mask;
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        keys = new int[tableSize];
+        values = new Component[tableSize];
+        mask = tableSize - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
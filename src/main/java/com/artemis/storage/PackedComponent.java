@@ -0,0 +1,157 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.storage;
+
+import com.artemis.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A component whose fields live in primitive columns outside of the component
+ * instance, so a world does not hold an object per entity for it.
+ * <p/>
+ * A packed component declares its fields by passing their types to the constructor,
+ * and exposes them through accessors built on the protected getters and setters, e.g.
+ * <pre>
+ * public class Position extends PackedComponent {
+ *     private static final int X = 0;
+ *     private static final int Y = 1;
+ *
+ *     public Position() {
+ *         super(FieldType.FLOAT, FieldType.FLOAT);
+ *     }
+ *
+ *     public float getX() {
+ *         return getFloat(X);
+ *     }
+ *
+ *     public Position setX(float x) {
+ *         setFloat(X, x);
+ *         return this;
+ *     }
+ *     ...
+ * }
+ * </pre>
+ * Packed types need a public no-argument constructor. The components of a packed type
+ * are kept by a PackedComponentStorage, in one direct ByteBuffer per field indexed by
+ * entity id. Instances handed out by the storage or a PackedMapper are flyweights: they
+ * point at the fields of one entity until they are pointed at another one, so don't
+ * keep them around. A new instance is detached, it holds its own fields and can be
+ * added to an entity, which copies its fields into the storage.
+ *
+ * @see PackedComponentStorage
+ * @see com.artemis.PackedMapper
+ */
+public abstract class PackedComponent extends Component {
+    /**
+     * The types a packed field can have.
+     */
+    public enum FieldType {
+        INT(4), FLOAT(4), LONG(8), DOUBLE(8);
+
+        private final int size;
+
+        FieldType(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return the size of the field in bytes.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final FieldType[] fields;
+    private ByteBuffer[] columns;
+    private int index;
+    private PackedComponentStorage storage;
+
+    protected PackedComponent(FieldType... fields) {
+        this.fields = fields;
+        this.columns = new ByteBuffer[fields.length];
+        for (int i = 0; fields.length > i; i++) {
+            columns[i] = ByteBuffer.allocate(fields[i].getSize()).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    protected final int getInt(int field) {
+        return columns[field].getInt(index << 2);
+    }
+
+    protected final void setInt(int field, int value) {
+        columns[field].putInt(index << 2, value);
+    }
+
+    protected final float getFloat(int field) {
+        return columns[field].getFloat(index << 2);
+    }
+
+    protected final void setFloat(int field, float value) {
+        columns[field].putFloat(index << 2, value);
+    }
+
+    protected final long getLong(int field) {
+        return columns[field].getLong(index << 3);
+    }
+
+    protected final void setLong(int field, long value) {
+        columns[field].putLong(index << 3, value);
+    }
+
+    protected final double getDouble(int field) {
+        return columns[field].getDouble(index << 3);
+    }
+
+    protected final void setDouble(int field, double value) {
+        columns[field].putDouble(index << 3, value);
+    }
+
+    /**
+     * @return the id of the entity this flyweight points at, or 0 when detached.
+     */
+    public final int getEntityId() {
+        return index;
+    }
+
+    final FieldType[] getFields() {
+        return fields;
+    }
+
+    final ByteBuffer[] getColumns() {
+        return columns;
+    }
+
+    final PackedComponentStorage getStorage() {
+        return storage;
+    }
+
+    final void bind(PackedComponentStorage storage, ByteBuffer[] columns, int index) {
+        this.storage = storage;
+        this.columns = columns;
+        this.index = index;
+    }
+}
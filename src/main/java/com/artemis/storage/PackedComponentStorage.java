@@ -0,0 +1,200 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.storage;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/**
+ * Stores the fields of a PackedComponent type in struct-of-arrays form: one direct
+ * ByteBuffer per field, indexed by entity id. The component data stays outside of
+ * the Java heap and no object exists per entity, get() returns a flyweight pointing
+ * at the fields of the entity.
+ * <p/>
+ * The ComponentManager uses this storage for every PackedComponent type.
+ */
+public class PackedComponentStorage implements ComponentStorage {
+    private final PackedComponent.FieldType[] fields;
+    private final PackedComponent flyweight;
+    private final Class<? extends PackedComponent> type;
+    private ByteBuffer[] columns;
+    private int capacity;
+    private BitSet present;
+    private int size;
+
+    public PackedComponentStorage(Class<? extends PackedComponent> type) {
+        this.type = type;
+        this.flyweight = newInstance(type);
+        this.fields = flyweight.getFields();
+        this.present = new BitSet();
+        this.columns = new ByteBuffer[fields.length];
+        grow(64);
+    }
+
+    /**
+     * Returns the shared flyweight of this storage pointed at the entity. Use a
+     * PackedMapper, or get(int, PackedComponent), to access several entities at once.
+     *
+     * @param entityId id of the entity
+     * @return the flyweight, or null if the entity has no component of this type.
+     */
+    @Override
+    public Component get(int entityId) {
+        return get(entityId, flyweight);
+    }
+
+    /**
+     * Points a flyweight at the fields of an entity.
+     *
+     * @param entityId  id of the entity
+     * @param flyweight a flyweight created by newFlyweight()
+     * @param <T>       the packed type
+     * @return the flyweight, or null if the entity has no component of this type.
+     */
+    public <T extends PackedComponent> T get(int entityId, T flyweight) {
+        if (!present.get(entityId)) {
+            return null;
+        }
+        flyweight.bind(this, columns, entityId);
+        return flyweight;
+    }
+
+    /**
+     * Stores a component, copying its fields unless it is a flyweight of this storage
+     * already pointing at the entity.
+     *
+     * @param entityId  id of the entity
+     * @param component a component of the packed type of this storage
+     */
+    @Override
+    public void set(int entityId, Component component) {
+        PackedComponent source = (PackedComponent) component;
+        if (source.getStorage() != this || source.getEntityId() != entityId) {
+            ensureCapacity(entityId);
+            copy(source, entityId);
+        }
+        if (!present.get(entityId)) {
+            present.set(entityId);
+            size++;
+        }
+    }
+
+    /**
+     * Zeroes the fields of an entity and points a flyweight at them, without marking
+     * the component as present. Used to create components in place, the component
+     * still needs to be added to the entity.
+     *
+     * @param entityId  id of the entity
+     * @param flyweight a flyweight created by newFlyweight()
+     * @param <T>       the packed type
+     * @return the flyweight
+     */
+    public <T extends PackedComponent> T create(int entityId, T flyweight) {
+        ensureCapacity(entityId);
+        for (int i = 0; fields.length > i; i++) {
+            int size = fields[i].getSize();
+            if (size == 8) {
+                columns[i].putLong(entityId << 3, 0L);
+            } else {
+                columns[i].putInt(entityId << 2, 0);
+            }
+        }
+        flyweight.bind(this, columns, entityId);
+        return flyweight;
+    }
+
+    @Override
+    public void remove(int entityId) {
+        if (present.get(entityId)) {
+            present.clear(entityId);
+            size--;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a new flyweight for this storage.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends PackedComponent> T newFlyweight() {
+        return (T) newInstance(type);
+    }
+
+    /**
+     * @return the number of entity ids the columns can hold without growing.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void copy(PackedComponent source, int entityId) {
+        ByteBuffer[] from = source.getColumns();
+        int fromIndex = source.getEntityId();
+        for (int i = 0; fields.length > i; i++) {
+            if (fields[i].getSize() == 8) {
+                columns[i].putLong(entityId << 3, from[i].getLong(fromIndex << 3));
+            } else {
+                columns[i].putInt(entityId << 2, from[i].getInt(fromIndex << 2));
+            }
+        }
+    }
+
+    private void ensureCapacity(int entityId) {
+        if (entityId >= capacity) {
+            grow(Math.max(entityId + 1, (capacity * 3) / 2 + 1));
+        }
+    }
+
+    private void grow(int newCapacity) {
+        for (int i = 0; fields.length > i; i++) {
+            ByteBuffer column = ByteBuffer.allocateDirect(newCapacity * fields[i].getSize()).order(ByteOrder.nativeOrder());
+            if (columns[i] != null) {
+                ByteBuffer old = columns[i].duplicate();
+                old.clear();
+                column.put(old);
+                column.clear();
+            }
+            columns[i] = column;
+        }
+        capacity = newCapacity;
+        // Flyweights keep the columns they were pointed at, so point the shared one at the new columns
+        flyweight.bind(this, columns, flyweight.getEntityId());
+    }
+
+    private static PackedComponent newInstance(Class<? extends PackedComponent> type) {
+        try {
+            return type.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Packed component " + type.getName() + " needs a public no-argument constructor", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.storage;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+
+import java.util.Arrays;
+
+/**
+ * Stores components in a sparse set: the components are packed in a dense array,
+ * which can be iterated without gaps with size(), getEntityId(int) and getComponent(int),
+ * and a paged sparse array maps entity ids to their position in the dense array.
+ * <p/>
+ * Pages of the sparse array are only allocated for ranges of ids that hold a component,
+ * so a few components on high entity ids don't cost an array as large as the id. Removing
+ * a component moves the last component of the dense array into its place.
+ */
+public class SparseSetComponentStorage implements ComponentStorage {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private int[][] pages;
+    private int[] entityIds;
+    private Component[] components;
+    private int size;
+
+    public SparseSetComponentStorage() {
+        this(64);
+    }
+
+    /**
+     * @param capacity initial number of components the storage can hold without growing.
+     */
+    public SparseSetComponentStorage(int capacity) {
+        pages = new int[1][];
+        entityIds = new int[capacity];
+        components = new Component[capacity];
+    }
+
+    @Override
+    public Component get(int entityId) {
+        int index = indexOf(entityId);
+        return index >= 0 ? components[index] : null;
+    }
+
+    @Override
+    public void set(int entityId, Component component) {
+        int index = indexOf(entityId);
+        if (index >= 0) {
+            components[index] = component;
+            return;
+        }
+
+        if (size == entityIds.length) {
+            int capacity = (size * 3) / 2 + 1;
+            entityIds = Arrays.copyOf(entityIds, capacity);
+            components = Arrays.copyOf(components, capacity);
+        }
+        entityIds[size] = entityId;
+        components[size] = component;
+        page(entityId)[entityId & PAGE_MASK] = ++size; // positions are stored off by one, 0 means absent
+    }
+
+    @Override
+    public void remove(int entityId) {
+        int index = indexOf(entityId);
+        if (index < 0) {
+            return;
+        }
+
+        int last = --size;
+        if (index != last) {
+            int moved = entityIds[last];
+            entityIds[index] = moved;
+            components[index] = components[last];
+            pages[moved >>> PAGE_SHIFT][moved & PAGE_MASK] = index + 1;
+        }
+        components[last] = null;
+        pages[entityId >>> PAGE_SHIFT][entityId & PAGE_MASK] = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index position in the dense array, smaller than size()
+     * @return id of the entity at the position.
+     */
+    public int getEntityId(int index) {
+        return entityIds[index];
+    }
+
+    /**
+     * @param index position in the dense array, smaller than size()
+     * @return the component at the position.
+     */
+    public Component getComponent(int index) {
+        return components[index];
+    }
+
+    private int indexOf(int entityId) {
+        int page = entityId >>> PAGE_SHIFT;
+        if (page < pages.length) {
+            int[] sparse = pages[page];
+            if (sparse != null) {
+                return sparse[entityId & PAGE_MASK] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int[] page(int entityId) {
+        int page = entityId >>> PAGE_SHIFT;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        int[] sparse = pages[page];
+        if (sparse == null) {
+            sparse = new int[1 << PAGE_SHIFT];
+            pages[page] = sparse;
+        }
+        return sparse;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.systems;
+
+import com.artemis.Archetype;
+import com.artemis.ArchetypeChunk;
+import com.artemis.Aspect;
+import com.artemis.Entity;
+import com.artemis.EntitySystem;
+import com.artemis.utils.ImmutableBag;
+
+/**
+ * An entity processing system for worlds using archetype storage. Instead of going
+ * through the actives of the system, it walks the chunks of the archetypes matching
+ * its aspect, so entities with the same composition are processed together and their
+ * components are read column by column.
+ * <p/>
+ * Retrieve the components of an entity from the chunk, e.g.
+ * (Position) chunk.getColumn(positionType)[index]. Don't add or remove components
+ * while processing, that moves the entity to another archetype; defer such changes.
+ *
+ * @see com.artemis.ComponentManager#setArchetypeStorage(boolean)
+ */
+public abstract class ArchetypeProcessingSystem extends EntitySystem {
+    public ArchetypeProcessingSystem(Aspect aspect) {
+        super(aspect);
+    }
+
+    /**
+     * Process an entity this system is interested in.
+     *
+     * @param chunk the chunk holding the entity
+     * @param index index of the entity within the chunk
+     */
+    protected abstract void process(ArchetypeChunk chunk, int index);
+
+    @Override
+    protected final void processEntities(ImmutableBag<Entity> entities) {
+        ImmutableBag<Archetype> archetypes = getArchetypes();
+        for (int a = 0, as = archetypes.size(); as > a; a++) {
+            ImmutableBag<ArchetypeChunk> chunks = archetypes.get(a).getChunks();
+            for (int c = 0, cs = chunks.size(); cs > c; c++) {
+                ArchetypeChunk chunk = chunks.get(c);
+                for (int i = 0, s = chunk.size(); s > i; i++) {
+                    if (contains(chunk.getEntityId(i))) {
+                        process(chunk, i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean checkProcessing() {
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.systems;
+
+import com.artemis.Aspect;
+import com.artemis.Entity;
+import com.artemis.EntitySystem;
+import com.artemis.utils.ImmutableBag;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An entity processing system that splits its entities into chunks processed concurrently
+ * on a ForkJoinPool. Use this when the work per entity is independent of the other entities,
+ * process(Entity) is called from several threads at the same time.
+ * <p/>
+ * Splitting has a cost, so the system measures how long processing an entity takes and only
+ * goes parallel when processing all entities serially is expected to take longer than
+ * PARALLEL_COST nanoseconds. Systems with few or cheap entities keep a plain serial loop.
+ * <p/>
+ * The entities are processed on the pool given to the constructor, otherwise on the system
+ * pool of the world, or on a pool shared by all systems without one.
+ * <p/>
+ * Packed components can't be read with PackedMapper.get(Entity), or with a ComponentMapper
+ * of a packed type, in process(Entity): these return a single flyweight that concurrent
+ * calls would point at different entities. Use PackedMapper.get(Entity, flyweight) with a
+ * flyweight per thread instead, e.g. from a ThreadLocal initialized with newFlyweight().
+ *
+ * @see com.artemis.World#setSystemPool(ForkJoinPool)
+ */
+public abstract class ParallelEntityProcessingSystem extends EntitySystem {
+    /**
+     * Expected nanoseconds of serial processing from which splitting pays off.
+     */
+    public static final long PARALLEL_COST = 50000L;
+
+    private static final int MIN_CHUNK = 64;
+    private static final double SMOOTHING = 0.25;
+
+    private static ForkJoinPool sharedPool;
+
+    private final ForkJoinPool pool;
+    private double nanosPerEntity;
+    private int fixedThreshold = -1;
+
+    public ParallelEntityProcessingSystem(Aspect aspect) {
+        this(aspect, null);
+    }
+
+    public ParallelEntityProcessingSystem(Aspect aspect, ForkJoinPool pool) {
+        super(aspect);
+        this.pool = pool;
+    }
+
+    /**
+     * Process a entity this system is interested in. Called concurrently for different entities.
+     *
+     * @param e the entity to process.
+     */
+    protected abstract void process(Entity e);
+
+    /**
+     * Returns the number of entities from which they are processed in parallel, calibrated
+     * from the measured processing time per entity unless set with setParallelThreshold(int).
+     *
+     * @return the threshold, Integer.MAX_VALUE while it is not calibrated yet.
+     */
+    public int getParallelThreshold() {
+        if (fixedThreshold >= 0) {
+            return fixedThreshold;
+        }
+        if (nanosPerEntity <= 0.0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CHUNK * 2, PARALLEL_COST / nanosPerEntity));
+    }
+
+    /**
+     * Use a fixed threshold instead of calibrating it.
+     *
+     * @param threshold the number of entities from which they are processed in parallel, or -1 to calibrate.
+     */
+    public void setParallelThreshold(int threshold) {
+        fixedThreshold = threshold;
+    }
+
+    @Override
+    protected final void processEntities(ImmutableBag<Entity> entities) {
+        int size = entities.size();
+        if (size == 0) {
+            return;
+        }
+        ForkJoinPool pool = getPool();
+        long start = System.nanoTime();
+        if (size >= getParallelThreshold() && pool.getParallelism() > 1) {
+            int chunk = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4));
+            Chunk task = new Chunk(entities, 0, size, chunk);
+            if (ForkJoinTask.getPool() == pool) {
+                task.invoke();
+            } else {
+                pool.invoke(task);
+            }
+            calibrate((System.nanoTime() - start) * pool.getParallelism(), size);
+        } else {
+            for (int i = 0; size > i; i++) {
+                process(entities.get(i));
+            }
+            calibrate(System.nanoTime() - start, size);
+        }
+    }
+
+    @Override
+    protected boolean checkProcessing() {
+        return true;
+    }
+
+    private void calibrate(long nanos, int size) {
+        double sample = (double) nanos / size;
+        nanosPerEntity = nanosPerEntity <= 0.0 ? sample : nanosPerEntity + SMOOTHING * (sample - nanosPerEntity);
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool != null) {
+            return pool;
+        }
+        if (world.getSystemPool() != null) {
+            return world.getSystemPool();
+        }
+        return getSharedPool();
+    }
+
+    private static synchronized ForkJoinPool getSharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool();
+        }
+        return sharedPool;
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ImmutableBag<Entity> entities;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        private Chunk(ImmutableBag<Entity> entities, int from, int to, int chunk) {
+            this.entities = entities;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                for (int i = from; to > i; i++) {
+                    process(entities.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(entities, from, middle, chunk), new Chunk(entities, middle, to, chunk));
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A growable matrix of bits stored in a single primitive long array, one row per
+ * index with a fixed number of words per row (the stride).
+ * <p/>
+ * Used to keep a bitset per entity without a BitSet instance and its own array for
+ * every entity. The stride grows with the highest bit that has been set, as long as
+ * fewer than 64 bits are in use every row takes up a single long.
+ */
+public class BitMatrix {
+    private long[] words;
+    private int stride;
+    private int rows;
+
+    /**
+     * Constructs an empty matrix with a stride of one word and room for 64 rows.
+     */
+    public BitMatrix() {
+        this(64);
+    }
+
+    /**
+     * Constructs an empty matrix with a stride of one word.
+     *
+     * @param rows the initial row capacity.
+     */
+    public BitMatrix(int rows) {
+        this.stride = 1;
+        this.rows = rows;
+        this.words = new long[rows];
+    }
+
+    /**
+     * @return number of words per row.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return number of rows the matrix can hold without growing.
+     */
+    public int getRowCapacity() {
+        return rows;
+    }
+
+    /**
+     * Returns a word of a row, reading past the stride or the row capacity returns 0.
+     *
+     * @param row  the row
+     * @param word index of the word within the row
+     * @return the word
+     */
+    public long getWord(int row, int word) {
+        if (row < rows && word < stride) {
+            return words[row * stride + word];
+        }
+        return 0L;
+    }
+
+    public boolean get(int row, int bit) {
+        if (row >= rows) {
+            return false;
+        }
+        if (stride == 1) {
+            return bit < 64 && (words[row] & (1L << bit)) != 0;
+        }
+        int word = bit >>> 6;
+        return word < stride && (words[row * stride + word] & (1L << bit)) != 0;
+    }
+
+    public void set(int row, int bit) {
+        int word = bit >>> 6;
+        if (row >= rows || word >= stride) {
+            grow(row + 1, word + 1);
+        }
+        words[row * stride + word] |= 1L << bit;
+    }
+
+    public void clear(int row, int bit) {
+        int word = bit >>> 6;
+        if (row < rows && word < stride) {
+            words[row * stride + word] &= ~(1L << bit);
+        }
+    }
+
+    /**
+     * Clears all bits of a row.
+     *
+     * @param row the row
+     */
+    public void clear(int row) {
+        if (row < rows) {
+            if (stride == 1) {
+                words[row] = 0L;
+            } else {
+                Arrays.fill(words, row * stride, (row + 1) * stride, 0L);
+            }
+        }
+    }
+
+    /**
+     * Clears a bit in every row.
+     *
+     * @param bit the bit
+     */
+    public void clearColumn(int bit) {
+        int word = bit >>> 6;
+        if (word < stride) {
+            long mask = ~(1L << bit);
+            for (int i = word, s = rows * stride; s > i; i += stride) {
+                words[i] &= mask;
+            }
+        }
+    }
+
+    public boolean isEmpty(int row) {
+        if (row < rows) {
+            for (int i = row * stride, end = i + stride; end > i; i++) {
+                if (words[i] != 0L) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the first bit that is set on or after the specified bit.
+     *
+     * @param row  the row
+     * @param from the bit to start checking from (inclusive)
+     * @return the index of the next set bit, or -1 if there is no such bit
+     */
+    public int nextSetBit(int row, int from) {
+        int word = from >>> 6;
+        if (row >= rows || word >= stride) {
+            return -1;
+        }
+        int offset = row * stride;
+        long bits = words[offset + word] & (-1L << from);
+        while (true) {
+            if (bits != 0L) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == stride) {
+                return -1;
+            }
+            bits = words[offset + word];
+        }
+    }
+
+    /**
+     * Checks if a row has any of the bits that are set in the specified set.
+     *
+     * @param row the row
+     * @param set the bits to check
+     * @return true if the row and the set have a bit in common
+     */
+    public boolean intersects(int row, BitSet set) {
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            if (get(row, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a row against three masks in a few word-wise operations: the row must
+     * have all bits of the all mask, none of the bits of the none mask and, unless
+     * the one mask is empty, at least one of the bits of the one mask. The masks
+     * may be shorter or longer than the stride, missing words are treated as 0.
+     *
+     * @param row  the row
+     * @param all  bits that must all be set
+     * @param none bits that must not be set
+     * @param one  bits of which at least one must be set, an empty array matches any row
+     * @return true if the row matches
+     * @see #toWords(BitSet)
+     */
+    public boolean matches(int row, long[] all, long[] none, long[] one) {
+        if (row >= rows) {
+            return isZero(all) && isZero(one);
+        }
+        return matches(words, row * stride, stride, all, none, one);
+    }
+
+    /**
+     * Matches a standalone set of words against three masks, like matches(int, long[], long[], long[]).
+     *
+     * @param bits the words to match
+     * @param all  bits that must all be set
+     * @param none bits that must not be set
+     * @param one  bits of which at least one must be set, an empty array matches any words
+     * @return true if the words match
+     */
+    public static boolean matches(long[] bits, long[] all, long[] none, long[] one) {
+        if (bits.length == 0) {
+            return isZero(all) && isZero(one);
+        }
+        return matches(bits, 0, bits.length, all, none, one);
+    }
+
+    private static boolean matches(long[] words, int offset, int length, long[] all, long[] none, long[] one) {
+        if (all.length <= 1 && none.length <= 1 && one.length <= 1) {
+            long bits = words[offset];
+            long allBits = all.length == 0 ? 0L : all[0];
+            return (bits & allBits) == allBits
+                    && (none.length == 0 || (bits & none[0]) == 0L)
+                    && (one.length == 0 || (bits & one[0]) != 0L);
+        }
+
+        for (int i = 0; all.length > i; i++) {
+            long bits = i < length ? words[offset + i] : 0L;
+            if ((bits & all[i]) != all[i]) {
+                return false;
+            }
+        }
+        for (int i = 0, end = Math.min(none.length, length); end > i; i++) {
+            if ((words[offset + i] & none[i]) != 0L) {
+                return false;
+            }
+        }
+        if (one.length == 0) {
+            return true;
+        }
+        for (int i = 0, end = Math.min(one.length, length); end > i; i++) {
+            if ((words[offset + i] & one[i]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(long[] mask) {
+        for (int i = 0; mask.length > i; i++) {
+            if (mask[i] != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a BitSet into the long words used as masks by this matrix.
+     *
+     * @param set the set to convert
+     * @return the words of the set, without trailing empty words
+     */
+    public static long[] toWords(BitSet set) {
+        long[] words = new long[(set.length() + 63) >>> 6];
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            words[i >>> 6] |= 1L << i;
+        }
+        return words;
+    }
+
+    /**
+     * Copies a row into a BitSet.
+     *
+     * @param row     the row
+     * @param fillSet the set to put the bits into, it is not cleared first
+     * @return the fillSet
+     */
+    public BitSet copyInto(int row, BitSet fillSet) {
+        for (int i = nextSetBit(row, 0); i >= 0; i = nextSetBit(row, i + 1)) {
+            fillSet.set(i);
+        }
+        return fillSet;
+    }
+
+    /**
+     * Replaces the bits of a row by the bits of a row of another matrix.
+     *
+     * @param row       the row to set
+     * @param source    the matrix to copy from
+     * @param sourceRow the row to copy
+     */
+    public void setRow(int row, BitMatrix source, int sourceRow) {
+        if (row >= rows || source.stride > stride) {
+            grow(row + 1, source.stride);
+        }
+        int offset = row * stride;
+        for (int w = 0; stride > w; w++) {
+            words[offset + w] = source.getWord(sourceRow, w);
+        }
+    }
+
+    private void grow(int minRows, int minStride) {
+        int newRows = rows;
+        if (minRows > rows) {
+            newRows = Math.max(minRows, (rows * 3) / 2 + 1);
+        }
+        int newStride = Math.max(stride, minStride);
+
+        if (newStride == stride) {
+            words = Arrays.copyOf(words, newRows * stride);
+        } else {
+            long[] newWords = new long[newRows * newStride];
+            for (int row = 0; rows > row; row++) {
+                System.arraycopy(words, row * stride, newWords, row * newStride, stride);
+            }
+            words = newWords;
+            stride = newStride;
+        }
+        rows = newRows;
+    }
+
+    /**
+     * Returns a view of a single row of this matrix.
+     *
+     * @param row the row
+     * @return a view backed by this matrix
+     */
+    public Row getRow(int row) {
+        return new Row(this, row);
+    }
+
+    /**
+     * A view of a single row of a BitMatrix, offering a subset of the BitSet methods.
+     * Changes made through the view are written to the matrix.
+     */
+    public static final class Row {
+        private final BitMatrix matrix;
+        private final int row;
+
+        private Row(BitMatrix matrix, int row) {
+            this.matrix = matrix;
+            this.row = row;
+        }
+
+        public boolean get(int bit) {
+            return matrix.get(row, bit);
+        }
+
+        public void set(int bit) {
+            matrix.set(row, bit);
+        }
+
+        public void clear(int bit) {
+            matrix.clear(row, bit);
+        }
+
+        public void clear() {
+            matrix.clear(row);
+        }
+
+        public boolean isEmpty() {
+            return matrix.isEmpty(row);
+        }
+
+        public int nextSetBit(int from) {
+            return matrix.nextSetBit(row, from);
+        }
+
+        public boolean intersects(BitSet set) {
+            return matrix.intersects(row, set);
+        }
+
+        /**
+         * @return a copy of this row as a BitSet.
+         */
+        public BitSet toBitSet() {
+            return matrix.copyInto(row, new BitSet());
+        }
+
+        @Override
+        public String toString() {
+            return toBitSet().toString();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * This file is part of Artemis, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2014 SpongePowered <http://spongepowered.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.artemis.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can increment without contending on a single value.
+ * Every thread adds to one of several stripes, picked by thread id, and the total is
+ * the sum of all stripes. Stripes are spaced a cache line apart so threads incrementing
+ * different stripes don't share cache lines.
+ */
+public final class StripedCounter {
+    private static final int PADDING = 8; // longs per 64 byte cache line
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        cells = new AtomicLongArray(stripes * PADDING);
+        mask = stripes - 1;
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long value) {
+        long id = Thread.currentThread().getId();
+        int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        cells.getAndAdd(stripe * PADDING, value);
+    }
+
+    /**
+     * Returns the sum of all stripes. Not atomic, increments made while summing may
+     * or may not be included.
+     *
+     * @return the current total.
+     */
+    public long sum() {
+        long sum = 0L;
+        for (int i = 0; cells.length() > i; i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,133 @@
+package com.artemis;
+
+import com.artemis.systems.ArchetypeProcessingSystem;
+import com.artemis.utils.Bag;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ArchetypeStorageTest {
+    private World world;
+    private CountingSystem system;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.getComponentManager().setArchetypeStorage(true);
+        system = world.setSystem(new CountingSystem());
+        world.initialize();
+    }
+
+    @Test
+    public void getComponent() {
+        A a = new A();
+        B b = new B();
+        Entity e = world.createEntity().addComponent(a).addComponent(b);
+
+        assertThat(e.getComponent(A.class), is(sameInstance(a)));
+        assertThat(world.getMapper(B.class).get(e), is(sameInstance(b)));
+        assertThat(e.getComponents(new Bag<Component>()).size(), is(2));
+
+        e.removeComponent(A.class);
+        assertThat(e.getComponent(A.class), is(nullValue()));
+        assertThat(e.getComponent(B.class), is(sameInstance(b)));
+    }
+
+    @Test
+    public void archetypes_groupedByComposition() {
+        world.createEntity().addComponent(new A());
+        world.createEntity().addComponent(new A()).addComponent(new B());
+        world.createEntity().addComponent(new B()).addComponent(new A());
+
+        // empty, {A}, {A, B} and {B} on the way to {A, B}
+        assertThat(world.getComponentManager().getArchetypes().size(), is(4));
+        assertThat(world.getComponentManager().getArchetypes().get(1).size(), is(1));
+        assertThat(world.getComponentManager().getArchetypes().get(2).size(), is(2));
+        assertThat(world.getComponentManager().getArchetypes().get(3).size(), is(0));
+    }
+
+    @Test
+    public void removal_keepsEntitiesDense() {
+        Entity[] entities = new Entity[ArchetypeChunk.CAPACITY * 3];
+        for (int i = 0; entities.length > i; i++) {
+            A a = new A();
+            a.value = i;
+            entities[i] = world.createEntity().addComponent(a);
+            entities[i].addToWorld();
+        }
+        world.process();
+        assertThat(system.processed, is(entities.length));
+
+        for (int i = 0; entities.length > i; i += 2) {
+            entities[i].deleteFromWorld();
+        }
+        world.process();
+        assertThat(system.processed, is(entities.length / 2));
+
+        for (int i = 1; entities.length > i; i += 2) {
+            assertThat(entities[i].getComponent(A.class).value, is(i));
+        }
+    }
+
+    @Test
+    public void removal_keepsOneEmptyChunk() {
+        Entity[] entities = new Entity[ArchetypeChunk.CAPACITY * 3];
+        for (int i = 0; entities.length > i; i++) {
+            entities[i] = world.createEntity().addComponent(new A());
+        }
+        Archetype archetype = world.getComponentManager().getArchetypes().get(1);
+        assertThat(archetype.getChunks().size(), is(3));
+
+        for (int i = 0; entities.length > i; i++) {
+            entities[i].removeComponent(A.class);
+        }
+        assertThat(archetype.size(), is(0));
+        assertThat(archetype.getChunks().size(), is(1));
+    }
+
+    @Test
+    public void process_onlyEntitiesOfSystem() {
+        Entity added = world.createEntity().addComponent(new A());
+        added.addToWorld();
+        world.createEntity().addComponent(new A());
+        world.process();
+
+        assertThat(system.processed, is(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setArchetypeStorage_afterUse() {
+        world.createEntity().addComponent(new A());
+
+        world.getComponentManager().setArchetypeStorage(false);
+    }
+
+    static class A extends Component {
+        int value;
+    }
+
+    static class B extends Component {
+    }
+
+    static class CountingSystem extends ArchetypeProcessingSystem {
+        int processed;
+
+        CountingSystem() {
+            super(Aspect.getAspectForAll(A.class));
+        }
+
+        @Override
+        protected void begin() {
+            processed = 0;
+        }
+
+        @Override
+        protected void process(ArchetypeChunk chunk, int index) {
+            processed++;
+        }
+    }
+}
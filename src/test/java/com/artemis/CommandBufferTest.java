@@ -0,0 +1,129 @@
+package com.artemis;
+
+import com.artemis.systems.ParallelEntityProcessingSystem;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CommandBufferTest {
+
+    @Test
+    public void playback_inOriginOrder() {
+        World world = new World();
+        SpawnSystem system = world.setSystem(new SpawnSystem(new ForkJoinPool(4)));
+        system.setParallelThreshold(0);
+        world.initialize();
+
+        Entity[] parents = new Entity[1000];
+        for (int i = 0; parents.length > i; i++) {
+            parents[i] = world.createEntity().addComponent(new Parent());
+            parents[i].addToWorld();
+        }
+        world.process();
+        world.process();
+
+        for (int i = 0; parents.length > i; i++) {
+            assertThat(world.getEntityManager().isActive(parents[i].getId()), is(false));
+        }
+        ComponentMapper<Child> children = world.getMapper(Child.class);
+        for (int i = 0; parents.length > i; i++) {
+            Entity child = world.getEntity(parents.length + i);
+            assertThat(children.get(child).parent, is(i));
+        }
+    }
+
+    @Test
+    public void playback_ignoresDeletedEntities() {
+        World world = new World();
+        world.initialize();
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+
+        CommandBuffer buffer = world.getCommandBuffer();
+        buffer.delete(e.getId());
+        buffer.addComponent(e.getId(), new Parent());
+        world.process();
+
+        assertThat(e.getComponent(Parent.class), is(nullValue()));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void record_concurrentlyWithPlayback() throws InterruptedException {
+        final World world = new World();
+        world.initialize();
+        final int count = 20000;
+        Thread recorder = new Thread() {
+            @Override
+            public void run() {
+                CommandBuffer buffer = world.getCommandBuffer();
+                for (int i = 0; count > i; i++) {
+                    synchronized (buffer) {
+                        int entity = buffer.create();
+                        buffer.addComponent(entity, new Parent());
+                    }
+                }
+            }
+        };
+        int buffers = world.getCommandBufferCount();
+        recorder.start();
+        while (recorder.isAlive()) {
+            world.process();
+        }
+        recorder.join();
+        world.process();
+
+        assertThat(world.getEntityManager().getActiveEntityCount(), is(count));
+        assertThat(world.getComponentManager().getStorage(world.getComponentTypes().getTypeFor(Parent.class)).size(), is(count));
+        // the buffer of the recorder is dropped once the thread has died
+        assertThat(world.getCommandBufferCount(), is(buffers));
+    }
+
+    @Test
+    public void world_collectedAfterUsingBuffers() throws InterruptedException {
+        World world = new World();
+        world.setSystem(new SpawnSystem(null));
+        world.initialize();
+        world.createEntity().addComponent(new Parent()).addToWorld();
+        world.getCommandBuffer().create();
+        world.process();
+        world.process();
+        WeakReference<World> reference = new WeakReference<World>(world);
+        world = null;
+
+        for (int i = 0; 50 > i && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(reference.get() == null, is(true));
+    }
+
+    static class Parent extends Component {
+    }
+
+    static class Child extends Component {
+        int parent;
+    }
+
+    static class SpawnSystem extends ParallelEntityProcessingSystem {
+        SpawnSystem(ForkJoinPool pool) {
+            super(Aspect.getAspectForAll(Parent.class), pool);
+        }
+
+        @Override
+        protected void process(Entity e) {
+            CommandBuffer commands = getCommandBuffer();
+            Child child = new Child();
+            child.parent = e.getId();
+            int token = commands.create(e.getId());
+            commands.addComponent(token, child);
+            commands.delete(e.getId());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.artemis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ComponentMapperTest {
+    private World world;
+    private ComponentMapper<Health> mapper;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.initialize();
+        mapper = world.getMapper(Health.class);
+    }
+
+    @Test
+    public void getMapper_cachedPerWorld() {
+        assertThat(world.getMapper(Health.class), sameInstance(mapper));
+        assertThat(ComponentMapper.getFor(Health.class, world), sameInstance(mapper));
+        assertThat(new World().getMapper(Health.class) == mapper, is(false));
+    }
+
+    @Test
+    public void getSafe_checksComposition() {
+        Entity e = world.createEntity();
+        assertThat(mapper.getSafe(e), is(nullValue()));
+        assertThat(mapper.has(e), is(false));
+
+        Health health = new Health();
+        e.addComponent(health);
+        assertThat(mapper.getSafe(e), sameInstance(health));
+        assertThat(mapper.has(e), is(true));
+
+        e.removeComponent(Health.class);
+        assertThat(mapper.getSafe(e), is(nullValue()));
+    }
+
+    @Test
+    public void create_andGetOrCreate() {
+        Entity e = world.createEntity();
+        Health created = mapper.getOrCreate(e);
+        created.value = 5;
+
+        assertThat(mapper.get(e), sameInstance(created));
+        assertThat(mapper.getOrCreate(e), sameInstance(created));
+        assertThat(e.getComponent(Health.class).value, is(5));
+
+        Health replaced = mapper.create(e);
+        assertThat(mapper.get(e), sameInstance(replaced));
+        assertThat(replaced.value, is(0));
+    }
+
+    static class Health extends Component {
+        int value;
+    }
+}
@@ -0,0 +1,131 @@
+package com.artemis;
+
+import com.artemis.annotations.Mapper;
+import com.artemis.systems.EntityProcessingSystem;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ComponentTypeRegistryTest {
+
+    @Test
+    public void worlds_haveOwnDenseIndices() {
+        World first = new World();
+        World second = new World();
+
+        assertThat(first.getComponentTypes().getIndexFor(A.class), is(0));
+        assertThat(first.getComponentTypes().getIndexFor(B.class), is(1));
+        assertThat(second.getComponentTypes().getIndexFor(B.class), is(0));
+        assertThat(second.getComponentTypes().getIndexFor(A.class), is(1));
+        assertThat(first.getComponentTypes().getTypeFor(A.class),
+                sameInstance(first.getComponentTypes().get(0)));
+    }
+
+    @Test
+    public void globalType_resolvesToWorldType() {
+        World world = new World();
+        world.getComponentTypes().getTypeFor(B.class);
+        world.initialize();
+
+        @SuppressWarnings("deprecation")
+        ComponentType global = ComponentType.getTypeFor(A.class);
+        Entity e = world.createEntity();
+        A a = new A();
+        e.addComponent(a, global);
+
+        assertThat(e.getComponent(A.class), sameInstance(a));
+        assertThat(world.getComponentTypes().getIndexFor(A.class), is(1));
+    }
+
+    @Test
+    public void register_concurrently() throws InterruptedException {
+        final ComponentTypeRegistry types = new ComponentTypeRegistry();
+        final Class<?>[] classes = {A.class, B.class, C.class, D.class};
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; threads.length > t; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; classes.length > i; i++) {
+                        types.getTypeFor(classes[(i + offset) % classes.length].asSubclass(Component.class));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (int t = 0; threads.length > t; t++) {
+            threads[t].join();
+        }
+
+        assertThat(types.size(), is(classes.length));
+        Set<Class<?>> seen = new HashSet<Class<?>>();
+        for (int i = 0; classes.length > i; i++) {
+            seen.add(types.get(i).getType());
+            assertThat(types.getTypeFor(types.get(i).getType()).getIndex(), is(i));
+        }
+        assertThat(seen.size(), is(classes.length));
+    }
+
+    @Test
+    public void registries_collectedWithWorld() throws InterruptedException {
+        World world = new World();
+        world.setSystem(new ASystem());
+        world.initialize();
+        world.createEntity().addComponent(new A()).addComponent(new B()).addToWorld();
+        world.process();
+        ClassIndex index = new ClassIndex();
+        index.getIndex(A.class);
+        WeakReference<ComponentTypeRegistry> registry = new WeakReference<ComponentTypeRegistry>(world.getComponentTypes());
+        WeakReference<ClassIndex> classIndex = new WeakReference<ClassIndex>(index);
+        world = null;
+        index = null;
+
+        for (int i = 0; 50 > i && (registry.get() != null || classIndex.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(registry.get() == null, is(true));
+        assertThat(classIndex.get() == null, is(true));
+    }
+
+    static class A extends Component {
+    }
+
+    static class ASystem extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<A> am;
+
+        ASystem() {
+            super(Aspect.getAspectForAll(A.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            am.get(e);
+        }
+    }
+
+    static class B extends Component {
+    }
+
+    static class C extends Component {
+    }
+
+    static class D extends Component {
+    }
+}
@@ -0,0 +1,38 @@
+package com.artemis;
+
+import com.artemis.utils.BitMatrix;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class CompositionCacheTest {
+
+    @Test
+    public void getComposition_internsEqualRows() {
+        BitMatrix bits = new BitMatrix();
+        CompositionCache cache = new CompositionCache();
+        for (int row = 0; 1000 > row; row++) {
+            bits.set(row, row % 10);
+            bits.set(row, 100 + row % 7);
+        }
+
+        for (int row = 0; 1000 > row; row++) {
+            assertThat(cache.getComposition(bits, row), is(cache.getComposition(bits, row % 70)));
+        }
+        assertThat(cache.size(), is(70));
+        assertThat(cache.getComposition(bits, 0), is(not(cache.getComposition(bits, 1))));
+    }
+
+    @Test
+    public void getComposition_ignoresStride() {
+        BitMatrix bits = new BitMatrix();
+        CompositionCache cache = new CompositionCache();
+        bits.set(0, 3);
+        int composition = cache.getComposition(bits, 0);
+
+        bits.set(1, 200);
+        assertThat(cache.getComposition(bits, 0), is(composition));
+    }
+}
@@ -0,0 +1,255 @@
+package com.artemis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class EntityManagerTest {
+    private World world;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.initialize();
+    }
+
+    @Test
+    public void createEntity_sequentialIds() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(world.createEntity().getId(), is(i));
+        }
+    }
+
+    @Test
+    public void createEntity_reusesLowestIdFirst() {
+        Entity[] entities = new Entity[8];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = world.createEntity();
+            entities[i].addToWorld();
+        }
+        world.process();
+
+        entities[6].deleteFromWorld();
+        entities[2].deleteFromWorld();
+        entities[4].deleteFromWorld();
+        world.process();
+
+        assertThat(world.createEntity().getId(), is(2));
+        assertThat(world.createEntity().getId(), is(4));
+        assertThat(world.createEntity().getId(), is(6));
+        assertThat(world.createEntity().getId(), is(8));
+    }
+
+    @Test
+    public void resolve_handle() {
+        Entity e = world.createEntity();
+        long handle = e.getHandle();
+        assertThat(world.isAlive(handle), is(false));
+
+        e.addToWorld();
+        world.process();
+        assertThat(world.isAlive(handle), is(true));
+        assertThat(world.resolve(handle), is(e));
+
+        e.deleteFromWorld();
+        world.process();
+        Entity reused = world.createEntity();
+        reused.addToWorld();
+        world.process();
+
+        assertThat(reused.getId(), is(e.getId()));
+        assertThat(world.isAlive(handle), is(false));
+        assertThat(world.resolve(handle), is(nullValue()));
+        assertThat(world.resolve(reused.getHandle()), is(reused));
+    }
+
+    @Test
+    public void createEntity_recycled() {
+        world.getEntityManager().setRecycleEntities(true);
+
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+        long handle = e.getHandle();
+
+        e.deleteFromWorld();
+        world.process();
+        Entity reused = world.createEntity();
+
+        assertThat(reused, is(sameInstance(e)));
+        assertThat(reused.getHandle(), is(not(handle)));
+    }
+
+    @Test
+    public void getUuid_generatedOnFirstRequest() {
+        CountingUuidGenerator generator = new CountingUuidGenerator();
+        world.setUuidGenerator(generator);
+
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+        assertThat(generator.generated, is(0));
+
+        UUID uuid = e.getUuid();
+        assertThat(generator.generated, is(1));
+        assertThat(e.getUuid(), is(sameInstance(uuid)));
+        assertThat(generator.generated, is(1));
+    }
+
+    @Test
+    public void getUuid_newAfterRecycle() {
+        world.getEntityManager().setRecycleEntities(true);
+
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+        UUID uuid = e.getUuid();
+
+        e.deleteFromWorld();
+        world.process();
+        Entity reused = world.createEntity();
+
+        assertThat(reused, is(sameInstance(e)));
+        assertThat(reused.getUuid(), is(not(uuid)));
+    }
+
+    @Test
+    public void createEntity_notRecycledByDefault() {
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+
+        e.deleteFromWorld();
+        world.process();
+
+        assertThat(world.createEntity(), is(not(sameInstance(e))));
+    }
+
+    @Test
+    public void createEntity_concurrently() throws Exception {
+        final int perThread = 10000;
+        final BitSet[] ids = new BitSet[4];
+        Thread[] threads = new Thread[ids.length];
+        for (int t = 0; threads.length > t; t++) {
+            final BitSet own = ids[t] = new BitSet();
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; perThread > i; i++) {
+                        own.set(world.createEntity().getId());
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        BitSet all = new BitSet();
+        for (int t = 0; threads.length > t; t++) {
+            threads[t].join();
+            assertThat(all.intersects(ids[t]), is(false));
+            all.or(ids[t]);
+        }
+
+        assertThat(all.cardinality(), is(perThread * ids.length));
+        assertThat(world.getEntityManager().getTotalCreated(), is((long) perThread * ids.length));
+    }
+
+    @Test
+    public void createEntity_offThreadReusesIds() throws Exception {
+        final Entity[] entities = new Entity[100];
+        Runnable create = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; entities.length > i; i++) {
+                    entities[i] = world.createEntity();
+                }
+            }
+        };
+        world.process();
+
+        int highest = 0;
+        for (int round = 0; 200 > round; round++) {
+            Thread thread = new Thread(create);
+            thread.start();
+            thread.join();
+            for (int i = 0; entities.length > i; i++) {
+                highest = Math.max(highest, entities[i].getId());
+                entities[i].addToWorld();
+            }
+            world.process();
+            for (int i = 0; entities.length > i; i++) {
+                entities[i].deleteFromWorld();
+            }
+            world.process();
+        }
+
+        assertThat(highest < 1024, is(true));
+    }
+
+    @Test
+    public void createEntity_idsBoundedUnderChurn() throws Exception {
+        final int threads = 4;
+        final int perThread = 20;
+        final Entity[] entities = new Entity[threads * perThread];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; threads > t; t++) {
+            final int offset = t * perThread;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; perThread > i; i++) {
+                        entities[offset + i] = world.createEntity();
+                    }
+                    return null;
+                }
+            });
+        }
+        world.process();
+
+        int highest = 0;
+        try {
+            for (int round = 0; 200 > round; round++) {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+                for (int i = 0; entities.length > i; i++) {
+                    highest = Math.max(highest, entities[i].getId());
+                    entities[i].addToWorld();
+                }
+                world.process();
+                for (int i = 0; entities.length > i; i++) {
+                    entities[i].deleteFromWorld();
+                }
+                world.process();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(highest < 2 * entities.length, is(true));
+    }
+
+    static class CountingUuidGenerator extends SequentialUuidGenerator {
+        int generated;
+
+        @Override
+        public UUID generate() {
+            generated++;
+            return super.generate();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.artemis;
+
+import com.artemis.utils.ImmutableBag;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EntitySystemTest {
+    private World world;
+
+    @Before
+    public void setUp() {
+        world = new World();
+    }
+
+    @Test
+    public void check_all() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class, B.class)));
+        world.initialize();
+
+        Entity match = createEntity(new A(), new B(), new C());
+        Entity partial = createEntity(new A());
+        world.process();
+
+        assertThat(system.getActives().contains(match), is(true));
+        assertThat(system.getActives().contains(partial), is(false));
+    }
+
+    @Test
+    public void check_exclude() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class).exclude(C.class)));
+        world.initialize();
+
+        Entity match = createEntity(new A(), new B());
+        Entity excluded = createEntity(new A(), new C());
+        world.process();
+
+        assertThat(system.getActives().contains(match), is(true));
+        assertThat(system.getActives().contains(excluded), is(false));
+    }
+
+    @Test
+    public void check_allAndOne() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class).one(B.class, C.class)));
+        world.initialize();
+
+        Entity match = createEntity(new A(), new C());
+        Entity noOne = createEntity(new A());
+        Entity noAll = createEntity(new B());
+        world.process();
+
+        assertThat(system.getActives().contains(match), is(true));
+        assertThat(system.getActives().contains(noOne), is(false));
+        assertThat(system.getActives().contains(noAll), is(false));
+    }
+
+    @Test
+    public void check_changed() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        world.initialize();
+
+        Entity e = createEntity(new B());
+        world.process();
+        assertThat(system.getActives().size(), is(0));
+
+        e.addComponent(new A());
+        e.changedInWorld();
+        world.process();
+        assertThat(system.getActives().contains(e), is(true));
+        assertThat(system.processed, is(1));
+
+        e.removeComponent(A.class);
+        e.changedInWorld();
+        world.process();
+        assertThat(system.getActives().size(), is(0));
+    }
+
+    @Test
+    public void check_deleted() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        world.initialize();
+
+        Entity e = createEntity(new A());
+        world.process();
+        e.deleteFromWorld();
+        world.process();
+
+        assertThat(system.getActives().size(), is(0));
+    }
+
+    @Test
+    public void check_changedUnrelatedAndExcluded() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class).exclude(C.class)));
+        world.initialize();
+
+        Entity e = createEntity(new A());
+        world.process();
+        e.addComponent(new B());
+        e.changedInWorld();
+        world.process();
+        assertThat(system.getActives().contains(e), is(true));
+
+        e.addComponent(new C());
+        e.changedInWorld();
+        world.process();
+        assertThat(system.getActives().contains(e), is(false));
+
+        e.removeComponent(C.class);
+        e.changedInWorld();
+        world.process();
+        assertThat(system.getActives().contains(e), is(true));
+    }
+
+    @Test
+    public void check_trackedChanges() {
+        world.getComponentManager().setTrackChanges(true);
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class, B.class)));
+        world.initialize();
+
+        Entity e = createEntity(new A());
+        world.process();
+        e.addComponent(new B());
+        world.process();
+        assertThat(system.getActives().contains(e), is(true));
+
+        e.removeComponent(A.class);
+        e.addComponent(new A());
+        e.removeComponent(B.class);
+        world.process();
+        assertThat(system.getActives().contains(e), is(false));
+    }
+
+    @Test
+    public void check_trackedChangesOfDisabled() {
+        world.getComponentManager().setTrackChanges(true);
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class, B.class)));
+        world.initialize();
+
+        Entity e = createEntity(new A());
+        world.process();
+        e.disable();
+        world.process();
+        e.addComponent(new B());
+        world.process();
+        assertThat(e.isEnabled(), is(false));
+        assertThat(system.getActives().size(), is(0));
+
+        e.enable();
+        world.process();
+        assertThat(system.getActives().contains(e), is(true));
+    }
+
+    @Test
+    public void check_deletedMany() {
+        TestSystem system = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        world.initialize();
+
+        Entity[] entities = new Entity[100];
+        for (int i = 0; entities.length > i; i++) {
+            entities[i] = createEntity(new A());
+        }
+        world.process();
+        for (int i = 0; entities.length > i; i += 3) {
+            entities[i].deleteFromWorld();
+            entities[i].deleteFromWorld();
+        }
+        world.process();
+
+        assertThat(system.getActives().size(), is(66));
+        for (int i = 0; entities.length > i; i++) {
+            assertThat(system.getActives().contains(entities[i]), is(i % 3 != 0));
+        }
+    }
+
+    @Test
+    public void check_systemAddedLater() {
+        TestSystem first = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        world.initialize();
+
+        Entity e = createEntity(new A(), new B());
+        world.process();
+        OtherSystem second = world.setSystem(new OtherSystem(Aspect.getAspectForAll(B.class)));
+        createEntity(new A(), new B());
+        world.process();
+
+        assertThat(first.getActives().size(), is(2));
+        assertThat(second.getActives().size(), is(1));
+
+        world.deleteSystem(first);
+        e.changedInWorld();
+        world.process();
+        assertThat(second.getActives().size(), is(2));
+    }
+
+    @Test
+    public void check_systemAddedAgain() {
+        TestSystem first = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        world.initialize();
+        Entity e = createEntity(new A());
+        createEntity(new A());
+        world.process();
+
+        world.deleteSystem(first);
+        TestSystem again = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        e.changedInWorld();
+        world.process();
+        assertThat(again.getActives().size(), is(1));
+        assertThat(world.getEntityManager().getSystemBits().getRow(e.getId()).get(again.getSystemIndex()), is(true));
+
+        e.removeComponent(A.class);
+        e.changedInWorld();
+        createEntity(new A());
+        world.process();
+        assertThat(again.getActives().size(), is(1));
+    }
+
+    @Test
+    public void deleted_leavesRowsEmpty() {
+        TestSystem first = world.setSystem(new TestSystem(Aspect.getAspectForAll(A.class)));
+        TestSystem second = world.setSystem(new OtherSystem(Aspect.getAspectForAll(B.class)));
+        world.initialize();
+        Entity e = createEntity(new A(), new B());
+        Entity other = createEntity(new A());
+        world.process();
+
+        world.deleteSystem(first);
+        e.deleteFromWorld();
+        world.process();
+        other.deleteFromWorld();
+        world.process();
+
+        // new entities reuse these ids without clearing the rows
+        assertThat(world.getEntityManager().getComponentBits().isEmpty(e.getId()), is(true));
+        assertThat(world.getEntityManager().getSystemBits().isEmpty(e.getId()), is(true));
+        assertThat(world.getEntityManager().getComponentBits().isEmpty(other.getId()), is(true));
+        assertThat(world.getEntityManager().getSystemBits().isEmpty(other.getId()), is(true));
+        assertThat(second.getActives().size(), is(0));
+    }
+
+    private Entity createEntity(Component... components) {
+        Entity e = world.createEntity();
+        for (Component component : components) {
+            e.addComponent(component);
+        }
+        e.addToWorld();
+        return e;
+    }
+
+    static class A extends Component {
+    }
+
+    static class B extends Component {
+    }
+
+    static class C extends Component {
+    }
+
+    static class TestSystem extends EntitySystem {
+        int processed;
+
+        TestSystem(Aspect aspect) {
+            super(aspect);
+        }
+
+        @Override
+        protected void processEntities(ImmutableBag<Entity> entities) {
+            processed += entities.size();
+        }
+
+        @Override
+        protected boolean checkProcessing() {
+            return true;
+        }
+    }
+
+    static class OtherSystem extends TestSystem {
+        OtherSystem(Aspect aspect) {
+            super(aspect);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.artemis;
+
+import com.artemis.annotations.Mapper;
+import com.artemis.systems.VoidEntitySystem;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MapperInjectorsTest {
+
+    @Test
+    public void inject_generatedAndInherited() {
+        World world = new World();
+        SubSystem system = world.setSystem(new SubSystem());
+        world.initialize();
+
+        assertThat(MapperInjectors.isGenerated(BaseSystem.class), is(true));
+        assertThat(MapperInjectors.isGenerated(SubSystem.class), is(true));
+        assertThat(system.names, is(world.getMapper(Name.class)));
+        assertThat(system.positions, notNullValue());
+        assertThat(SubSystem.ignored, nullValue());
+    }
+
+    @Test
+    public void inject_privateFieldByReflection() {
+        World world = new World();
+        PrivateSystem system = world.setSystem(new PrivateSystem());
+        world.initialize();
+
+        assertThat(MapperInjectors.isGenerated(PrivateSystem.class), is(false));
+        assertThat(system.getNames(), notNullValue());
+        assertThat(system.names, notNullValue());
+    }
+
+    static class Name extends Component {
+    }
+
+    abstract static class BaseSystem extends VoidEntitySystem {
+        @Mapper
+        ComponentMapper<Name> names;
+
+        @Override
+        protected void processSystem() {
+        }
+    }
+
+    static class SubSystem extends BaseSystem {
+        @Mapper
+        static ComponentMapper<Name> ignored;
+        @Mapper
+        PackedMapper<PackedMapperTest.Position> positions;
+    }
+
+    static class PrivateSystem extends BaseSystem {
+        @Mapper
+        private ComponentMapper<Name> privateNames;
+
+        ComponentMapper<Name> getNames() {
+            return privateNames;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.artemis;
+
+import com.artemis.storage.PackedComponent;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PackedMapperTest {
+
+    @Test
+    public void create_andGet() {
+        World world = new World();
+        world.initialize();
+        PackedMapper<Position> mapper = world.getPackedMapper(Position.class);
+
+        Entity[] entities = new Entity[200];
+        for (int i = 0; entities.length > i; i++) {
+            entities[i] = world.createEntity();
+            mapper.create(entities[i]).setX(i).setY(-i);
+        }
+        for (int i = 0; entities.length > i; i++) {
+            assertThat(mapper.get(entities[i]).getX(), is((float) i));
+            assertThat(mapper.get(entities[i]).getY(), is((float) -i));
+            assertThat(entities[i].getComponent(Position.class).getX(), is((float) i));
+        }
+    }
+
+    @Test
+    public void addDetached_copiesFields() {
+        World world = new World();
+        world.initialize();
+        PackedMapper<Position> mapper = world.getPackedMapper(Position.class);
+
+        Entity e = world.createEntity().addComponent(new Position().setX(3).setY(4));
+        Entity other = world.createEntity();
+        assertThat(mapper.get(e).getY(), is(4f));
+        assertThat(mapper.has(other), is(false));
+
+        e.removeComponent(Position.class);
+        assertThat(mapper.get(e), is(nullValue()));
+    }
+
+    @Test
+    public void archetypeStorage() {
+        World world = new World();
+        world.getComponentManager().setArchetypeStorage(true);
+        world.initialize();
+        PackedMapper<Position> mapper = world.getPackedMapper(Position.class);
+
+        Entity e = world.createEntity();
+        mapper.create(e).setX(5);
+        e.addToWorld();
+        world.process();
+        assertThat(mapper.get(e).getX(), is(5f));
+
+        e.deleteFromWorld();
+        world.process();
+        assertThat(mapper.has(e), is(false));
+    }
+
+    public static class Position extends PackedComponent {
+        private static final int X = 0;
+        private static final int Y = 1;
+
+        public Position() {
+            super(FieldType.FLOAT, FieldType.FLOAT);
+        }
+
+        public float getX() {
+            return getFloat(X);
+        }
+
+        public Position setX(float x) {
+            setFloat(X, x);
+            return this;
+        }
+
+        public float getY() {
+            return getFloat(Y);
+        }
+
+        public Position setY(float y) {
+            setFloat(Y, y);
+            return this;
+        }
+    }
+}
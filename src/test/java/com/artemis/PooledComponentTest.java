@@ -0,0 +1,94 @@
+package com.artemis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PooledComponentTest {
+    private World world;
+    private ComponentMapper<Velocity> mapper;
+    private ComponentType type;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.initialize();
+        mapper = world.getMapper(Velocity.class);
+        type = mapper.getType();
+    }
+
+    @Test
+    public void removeComponent_recycles() {
+        Entity e = world.createEntity();
+        Velocity velocity = mapper.create(e);
+        velocity.x = 3f;
+        e.removeComponent(Velocity.class);
+
+        assertThat(world.getComponentManager().getPoolSize(type), is(1));
+        assertThat(velocity.x, is(0f));
+
+        Entity other = world.createEntity();
+        assertThat(mapper.create(other), sameInstance(velocity));
+        assertThat(world.getComponentManager().getPoolSize(type), is(0));
+    }
+
+    @Test
+    public void addComponent_recyclesReplaced() {
+        Entity e = world.createEntity();
+        Velocity velocity = mapper.create(e);
+        velocity.x = 3f;
+        Velocity replacement = new Velocity();
+        e.addComponent(replacement);
+
+        assertThat(mapper.get(e), sameInstance(replacement));
+        assertThat(world.getComponentManager().getPoolSize(type), is(1));
+        assertThat(velocity.x, is(0f));
+
+        e.addComponent(replacement);
+        assertThat(world.getComponentManager().getPoolSize(type), is(1));
+    }
+
+    @Test
+    public void deleted_recyclesOnClean() {
+        Entity e = world.createEntity();
+        Velocity velocity = mapper.create(e);
+        e.addToWorld();
+        world.process();
+
+        e.deleteFromWorld();
+        world.process();
+        assertThat(world.getComponentManager().getPoolSize(type), is(1));
+        assertThat(mapper.create(world.createEntity()), sameInstance(velocity));
+    }
+
+    @Test
+    public void transferred_notRecycled() {
+        World target = new World();
+        target.initialize();
+        Entity e = world.createEntity();
+        Velocity velocity = mapper.create(e);
+        velocity.x = 2f;
+        e.addToWorld();
+        world.process();
+
+        Entity moved = world.transferTo(target, e);
+        world.process();
+        target.process();
+
+        assertThat(world.getComponentManager().getPoolSize(type), is(0));
+        assertThat(target.getMapper(Velocity.class).get(moved), sameInstance(velocity));
+        assertThat(velocity.x, is(2f));
+    }
+
+    static class Velocity extends PooledComponent {
+        float x;
+
+        @Override
+        protected void reset() {
+            x = 0f;
+        }
+    }
+}
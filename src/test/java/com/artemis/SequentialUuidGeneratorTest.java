@@ -0,0 +1,36 @@
+package com.artemis;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SequentialUuidGeneratorTest {
+
+    @Test
+    public void generate_uniqueAndIncreasing() {
+        SequentialUuidGenerator generator = new SequentialUuidGenerator();
+        Set<UUID> generated = new HashSet<UUID>();
+        UUID previous = generator.generate();
+        generated.add(previous);
+        for (int i = 0; 10000 > i; i++) {
+            UUID uuid = generator.generate();
+            assertThat(uuid.compareTo(previous), is(greaterThan(0)));
+            assertThat(generated.add(uuid), is(true));
+            previous = uuid;
+        }
+    }
+
+    @Test
+    public void generate_version4() {
+        UUID uuid = new SequentialUuidGenerator(-1L).generate();
+        assertThat(uuid.version(), is(4));
+        assertThat(uuid.variant(), is(2));
+        assertThat(uuid.getMostSignificantBits() >>> 16, is(-1L >>> 16));
+    }
+}
@@ -0,0 +1,136 @@
+package com.artemis;
+
+import com.artemis.annotations.Reads;
+import com.artemis.annotations.Writes;
+import com.artemis.utils.Bag;
+import com.artemis.utils.ImmutableBag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SystemSchedulerTest {
+
+    @Test
+    public void levels_followConflicts() {
+        World world = new World();
+        Bag<EntitySystem> systems = new Bag<EntitySystem>();
+        add(world, systems, new WritesA(null));
+        add(world, systems, new WritesB(null));
+        add(world, systems, new ReadsAB(null));
+        add(world, systems, new WritesB(null));
+        SystemScheduler scheduler = new SystemScheduler(systems);
+
+        // {WritesA, WritesB}, {ReadsAB}, {WritesB}
+        assertThat(scheduler.getLevelCount(), is(3));
+
+        add(world, systems, new Undeclared(null));
+        add(world, systems, new WritesA(null));
+        scheduler.invalidate();
+        assertThat(scheduler.getLevelCount(), is(5));
+    }
+
+    @Test
+    public void process_keepsOrderOfConflictingSystems() {
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        World world = new World();
+        world.setSystem(new WritesA(log));
+        world.setSystem(new ReadsAB(log));
+        world.setSystem(new WritesB(log));
+        world.setSystemPool(new ForkJoinPool(4));
+        world.initialize();
+
+        for (int i = 0; 100 > i; i++) {
+            log.clear();
+            world.process();
+            assertThat(log.size(), is(3));
+            assertThat(log.indexOf("WritesA") < log.indexOf("ReadsAB"), is(true));
+            assertThat(log.indexOf("WritesB") > log.indexOf("ReadsAB"), is(true));
+        }
+    }
+
+    @Test
+    public void process_deterministic() {
+        List<String> log = new ArrayList<String>();
+        World world = new World();
+        world.setSystem(new WritesA(log));
+        world.setSystem(new ReadsA(log));
+        world.setSystem(new WritesB(log));
+        world.setSystemPool(new ForkJoinPool(4));
+        world.setDeterministic(true);
+        world.initialize();
+
+        world.process();
+        assertThat(log, contains("WritesA", "WritesB", "ReadsA"));
+    }
+
+    private static void add(World world, Bag<EntitySystem> systems, EntitySystem system) {
+        system.setWorld(world);
+        systems.add(system);
+    }
+
+    static class A extends Component {
+    }
+
+    static class B extends Component {
+    }
+
+    abstract static class LoggingSystem extends EntitySystem {
+        private final List<String> log;
+
+        LoggingSystem(List<String> log) {
+            super(Aspect.getAspectForAll(A.class));
+            this.log = log;
+        }
+
+        @Override
+        protected void processEntities(ImmutableBag<Entity> entities) {
+            log.add(getClass().getSimpleName());
+        }
+
+        @Override
+        protected boolean checkProcessing() {
+            return true;
+        }
+    }
+
+    @Writes(A.class)
+    static class WritesA extends LoggingSystem {
+        WritesA(List<String> log) {
+            super(log);
+        }
+    }
+
+    @Writes(B.class)
+    static class WritesB extends LoggingSystem {
+        WritesB(List<String> log) {
+            super(log);
+        }
+    }
+
+    @Reads(A.class)
+    static class ReadsA extends LoggingSystem {
+        ReadsA(List<String> log) {
+            super(log);
+        }
+    }
+
+    @Reads({A.class, B.class})
+    static class ReadsAB extends LoggingSystem {
+        ReadsAB(List<String> log) {
+            super(log);
+        }
+    }
+
+    static class Undeclared extends LoggingSystem {
+        Undeclared(List<String> log) {
+            super(log);
+        }
+    }
+}
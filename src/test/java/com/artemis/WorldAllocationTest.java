@@ -0,0 +1,118 @@
+package com.artemis;
+
+import com.artemis.annotations.Mapper;
+import com.artemis.systems.EntityProcessingSystem;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WorldAllocationTest {
+    private static final int ENTITIES = 1000;
+    private static final int CHURN = 100;
+
+    private com.sun.management.ThreadMXBean threads;
+    private World world;
+    private Entity[] entities;
+    private Position[] positions;
+    private Velocity[] velocities;
+    private int next;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+
+        world = new World();
+        world.getEntityManager().setRecycleEntities(true);
+        world.setSystem(new MovementSystem());
+        world.initialize();
+
+        entities = new Entity[ENTITIES];
+        positions = new Position[ENTITIES];
+        velocities = new Velocity[ENTITIES];
+        for (int i = 0; ENTITIES > i; i++) {
+            positions[i] = new Position();
+            velocities[i] = new Velocity();
+            entities[i] = spawn(i);
+        }
+        world.process();
+    }
+
+    @Test
+    public void process_idle() {
+        for (int i = 0; 1000 > i; i++) {
+            world.process();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; 1000 > i; i++) {
+            world.process();
+        }
+        assertThat(allocatedBytes() - before, is(0L));
+    }
+
+    @Test
+    public void process_churn() {
+        for (int i = 0; 1000 > i; i++) {
+            churn();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; 1000 > i; i++) {
+            churn();
+        }
+        assertThat(allocatedBytes() - before, is(0L));
+    }
+
+    private void churn() {
+        for (int i = 0; CHURN > i; i++) {
+            int slot = next++ % ENTITIES;
+            entities[slot].deleteFromWorld();
+            entities[slot] = spawn(slot);
+        }
+        world.process();
+    }
+
+    private Entity spawn(int slot) {
+        Entity e = world.createEntity();
+        e.addComponent(positions[slot]);
+        if (slot % 2 == 0) {
+            e.addComponent(velocities[slot]);
+        }
+        e.addToWorld();
+        return e;
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static class Position extends Component {
+        float x;
+    }
+
+    static class Velocity extends Component {
+        float x;
+    }
+
+    static class MovementSystem extends EntityProcessingSystem {
+        @Mapper
+        ComponentMapper<Position> pm;
+        @Mapper
+        ComponentMapper<Velocity> vm;
+
+        MovementSystem() {
+            super(Aspect.getAspectForAll(Position.class, Velocity.class));
+        }
+
+        @Override
+        protected void process(Entity e) {
+            pm.get(e).x += vm.get(e).x;
+        }
+    }
+}
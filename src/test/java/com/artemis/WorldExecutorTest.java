@@ -0,0 +1,119 @@
+package com.artemis;
+
+import com.artemis.systems.VoidEntitySystem;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WorldExecutorTest {
+
+    @Test
+    public void tick_processesEveryWorld() {
+        WorldExecutor executor = new WorldExecutor(new ForkJoinPool(2));
+        CountingSystem[] systems = new CountingSystem[8];
+        for (int i = 0; systems.length > i; i++) {
+            World world = new World();
+            systems[i] = world.setSystem(new CountingSystem(0L));
+            world.initialize();
+            executor.add(world);
+        }
+
+        for (int t = 0; 10 > t; t++) {
+            executor.tick(1f);
+        }
+        executor.shutdown();
+
+        for (int i = 0; systems.length > i; i++) {
+            assertThat(systems[i].processed, is(10));
+            assertThat(executor.getShards().get(i).getTickCount(), is(10L));
+            assertThat(executor.getShards().get(i).getSkippedCount(), is(0L));
+        }
+    }
+
+    @Test
+    public void tick_skipsWorldOverBudget() {
+        WorldExecutor executor = new WorldExecutor(new ForkJoinPool(1));
+        World slow = new World();
+        CountingSystem slowSystem = slow.setSystem(new CountingSystem(5000000L));
+        slow.initialize();
+        World fast = new World();
+        CountingSystem fastSystem = fast.setSystem(new CountingSystem(0L));
+        fast.initialize();
+        WorldExecutor.Shard slowShard = executor.add(slow, 1000000L);
+        executor.add(fast);
+
+        executor.tick(1f);
+        assertThat(slowShard.getOverrunCount(), is(1L));
+        assertThat(slowShard.getDebt() > 0L, is(true));
+
+        executor.tick(1f);
+        executor.tick(1f);
+        assertThat(fastSystem.processed, is(3));
+        assertThat(slowSystem.processed, is(1));
+        assertThat(slowShard.getSkippedCount(), is(2L));
+
+        for (int t = 0; WorldExecutor.MAX_SKIPPED > t; t++) {
+            executor.tick(1f);
+        }
+        // the delta of the skipped ticks is handed to the next tick
+        assertThat(slowSystem.processed, is(2));
+        assertThat(slowSystem.delta, is(5f));
+        executor.shutdown();
+    }
+
+    @Test
+    public void tick_waitsForAllWorldsWhenOneFails() {
+        WorldExecutor executor = new WorldExecutor(new ForkJoinPool(4));
+        World failing = new World();
+        failing.setSystem(new VoidEntitySystem() {
+            @Override
+            protected void processSystem() {
+                throw new IllegalStateException("failed");
+            }
+        });
+        failing.initialize();
+        executor.add(failing);
+        CountingSystem[] systems = new CountingSystem[4];
+        for (int i = 0; systems.length > i; i++) {
+            World world = new World();
+            systems[i] = world.setSystem(new CountingSystem(20000000L));
+            world.initialize();
+            executor.add(world);
+        }
+
+        try {
+            executor.tick(1f);
+            fail("tick should rethrow the failure of a world");
+        } catch (IllegalStateException e) {
+            for (int i = 0; systems.length > i; i++) {
+                assertThat(systems[i].processed, is(1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class CountingSystem extends VoidEntitySystem {
+        private final long work;
+        int processed;
+        float delta;
+
+        CountingSystem(long work) {
+            this.work = work;
+        }
+
+        @Override
+        protected void processSystem() {
+            processed++;
+            delta = world.getDelta();
+            long end = System.nanoTime() + work;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.artemis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WorldTest {
+    private World world;
+    private CountingManager manager;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        manager = world.setManager(new CountingManager());
+        world.initialize();
+    }
+
+    @Test
+    public void process_addedAndChanged() {
+        Entity e = world.createEntity();
+        e.addToWorld();
+        e.changedInWorld();
+        e.changedInWorld();
+        world.process();
+
+        assertThat(manager.added, is(1));
+        assertThat(manager.changed, is(0));
+    }
+
+    @Test
+    public void process_addedAndDeleted() {
+        Entity e = world.createEntity();
+        e.addToWorld();
+        e.deleteFromWorld();
+        world.process();
+
+        assertThat(manager.added, is(0));
+        assertThat(manager.deleted, is(1));
+        assertThat(world.getEntityManager().getActiveEntityCount(), is(0));
+    }
+
+    @Test
+    public void process_disabledAndEnabled() {
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+
+        e.disable();
+        e.enable();
+        world.process();
+        assertThat(manager.disabled, is(0));
+        assertThat(manager.enabled, is(0));
+
+        e.disable();
+        world.process();
+        e.enable();
+        e.changedInWorld();
+        world.process();
+        assertThat(manager.disabled, is(1));
+        assertThat(manager.enabled, is(1));
+        assertThat(manager.changed, is(0));
+    }
+
+    @Test
+    public void process_eventsQueuedWhileDispatching() {
+        manager.deleteOnAdd = true;
+        world.createEntity().addToWorld();
+        world.process();
+
+        assertThat(manager.added, is(1));
+        assertThat(manager.deleted, is(1));
+    }
+
+    @Test
+    public void process_deletedAgainWhileDeleting() {
+        manager.deleteOnDelete = true;
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+
+        e.deleteFromWorld();
+        world.process();
+        e.deleteFromWorld();
+        world.process();
+
+        assertThat(manager.deleted, is(1));
+        assertThat(world.getEntityManager().getTotalDeleted(), is(1L));
+        assertThat(world.createEntity().getId() == world.createEntity().getId(), is(false));
+    }
+
+    @Test
+    public void transferTo_movesComponents() {
+        World target = new World();
+        target.getComponentManager().setArchetypeStorage(true);
+        CountingManager targetManager = target.setManager(new CountingManager());
+        target.getComponentTypes().getTypeFor(Other.class);
+        target.initialize();
+
+        Name name = new Name();
+        Entity e = world.createEntity().addComponent(name);
+        world.getPackedMapper(PackedMapperTest.Position.class).create(e).setX(7f);
+        e.addToWorld();
+        world.process();
+
+        Entity moved = world.transferTo(target, e);
+        world.process();
+        target.process();
+
+        assertThat(manager.deleted, is(1));
+        assertThat(targetManager.added, is(1));
+        assertThat(moved.getComponent(Name.class), is(name));
+        assertThat(target.getPackedMapper(PackedMapperTest.Position.class).get(moved).getX(), is(7f));
+        assertThat(target.getComponentManager().getArchetypes().size(), is(2));
+    }
+
+    @Test
+    public void transferTo_keepsDisabled() {
+        World target = new World();
+        CountingManager targetManager = target.setManager(new CountingManager());
+        target.initialize();
+
+        Entity e = world.createEntity().addComponent(new Name());
+        e.addToWorld();
+        world.process();
+        e.disable();
+        world.process();
+
+        Entity moved = world.transferTo(target, e);
+        target.process();
+
+        assertThat(targetManager.added, is(1));
+        assertThat(targetManager.disabled, is(1));
+        assertThat(moved.isEnabled(), is(false));
+    }
+
+    @Test
+    public void transferTo_keepsUuid() {
+        World target = new World();
+        target.initialize();
+
+        Entity e = world.createEntity();
+        e.addToWorld();
+        world.process();
+        UUID uuid = e.getUuid();
+
+        Entity moved = world.transferTo(target, e);
+        assertThat(moved.getUuid(), is(uuid));
+    }
+
+    static class Name extends Component {
+    }
+
+    static class Other extends Component {
+    }
+
+    static class CountingManager extends Manager {
+        int added;
+        int changed;
+        int deleted;
+        int disabled;
+        int enabled;
+        boolean deleteOnAdd;
+        boolean deleteOnDelete;
+
+        @Override
+        protected void initialize() {
+        }
+
+        @Override
+        public void added(Entity e) {
+            added++;
+            if (deleteOnAdd) {
+                e.deleteFromWorld();
+            }
+        }
+
+        @Override
+        public void changed(Entity e) {
+            changed++;
+        }
+
+        @Override
+        public void deleted(Entity e) {
+            deleted++;
+            if (deleteOnDelete) {
+                e.deleteFromWorld();
+            }
+        }
+
+        @Override
+        public void disabled(Entity e) {
+            disabled++;
+        }
+
+        @Override
+        public void enabled(Entity e) {
+            enabled++;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.artemis.storage;
+
+import com.artemis.Component;
+import com.artemis.ComponentStorage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class ComponentStorageTest {
+    private final ComponentStorage subject;
+
+    public ComponentStorageTest(String name, Class<? extends ComponentStorage> type) throws Exception {
+        this.subject = type.newInstance();
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> storages() {
+        return Arrays.asList(new Object[][]{
+                {"dense", DenseComponentStorage.class},
+                {"sparseSet", SparseSetComponentStorage.class},
+                {"hashed", HashedComponentStorage.class}
+        });
+    }
+
+    @Test
+    public void get_empty() {
+        assertThat(subject.get(0), is(nullValue()));
+        assertThat(subject.get(1000000), is(nullValue()));
+        assertThat(subject.size(), is(0));
+    }
+
+    @Test
+    public void set_replace() {
+        Component first = new TestComponent();
+        Component second = new TestComponent();
+
+        subject.set(900000, first);
+        subject.set(900000, second);
+
+        assertThat(subject.get(900000), is(sameInstance(second)));
+        assertThat(subject.size(), is(1));
+    }
+
+    @Test
+    public void remove() {
+        Component component = new TestComponent();
+        subject.set(3, component);
+
+        subject.remove(3);
+        subject.remove(4);
+
+        assertThat(subject.get(3), is(nullValue()));
+        assertThat(subject.size(), is(0));
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(7);
+        Map<Integer, Component> expected = new HashMap<Integer, Component>();
+
+        for (int i = 0; i < 20000; i++) {
+            int id = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                subject.remove(id);
+                expected.remove(id);
+            } else {
+                Component component = new TestComponent();
+                subject.set(id, component);
+                expected.put(id, component);
+            }
+        }
+
+        assertThat(subject.size(), is(expected.size()));
+        for (int id = 0; id < 5000; id++) {
+            assertThat(subject.get(id), is(expected.get(id)));
+        }
+    }
+
+    static class TestComponent extends Component {
+    }
+}
@@ -0,0 +1,68 @@
+package com.artemis.systems;
+
+import com.artemis.Aspect;
+import com.artemis.Component;
+import com.artemis.ComponentMapper;
+import com.artemis.Entity;
+import com.artemis.World;
+import com.artemis.annotations.Mapper;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParallelEntityProcessingSystemTest {
+
+    @Test
+    public void process_everyEntityOnce() {
+        World world = new World();
+        CountingSystem system = world.setSystem(new CountingSystem(new ForkJoinPool(4)));
+        system.setParallelThreshold(0);
+        world.initialize();
+
+        Counter[] counters = new Counter[10000];
+        for (int i = 0; counters.length > i; i++) {
+            counters[i] = new Counter();
+            world.createEntity().addComponent(counters[i]).addToWorld();
+        }
+        world.process();
+        world.process();
+
+        for (int i = 0; counters.length > i; i++) {
+            assertThat(counters[i].count, is(2));
+        }
+    }
+
+    @Test
+    public void threshold_calibrated() {
+        World world = new World();
+        CountingSystem system = world.setSystem(new CountingSystem(null));
+        world.initialize();
+        assertThat(system.getParallelThreshold(), is(Integer.MAX_VALUE));
+
+        world.createEntity().addComponent(new Counter()).addToWorld();
+        world.process();
+        assertThat(system.getParallelThreshold(), is(greaterThan(0)));
+    }
+
+    static class Counter extends Component {
+        int count;
+    }
+
+    static class CountingSystem extends ParallelEntityProcessingSystem {
+        @Mapper
+        ComponentMapper<Counter> cm;
+
+        CountingSystem(ForkJoinPool pool) {
+            super(Aspect.getAspectForAll(Counter.class), pool);
+        }
+
+        @Override
+        protected void process(Entity e) {
+            cm.get(e).count++;
+        }
+    }
+}
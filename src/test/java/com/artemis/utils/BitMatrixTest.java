@@ -0,0 +1,116 @@
+package com.artemis.utils;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BitMatrixTest {
+    private BitMatrix subject = new BitMatrix(4);
+
+    @Test
+    public void get_empty() {
+        assertThat(subject.get(0, 0), is(false));
+        assertThat(subject.get(100, 200), is(false));
+        assertThat(subject.isEmpty(100), is(true));
+    }
+
+    @Test
+    public void set_singleWord() {
+        subject.set(1, 63);
+
+        assertThat(subject.getStride(), is(1));
+        assertThat(subject.get(1, 63), is(true));
+        assertThat(subject.get(0, 63), is(false));
+        assertThat(subject.get(1, 127), is(false));
+    }
+
+    @Test
+    public void clearColumn() {
+        subject.set(0, 70);
+        subject.set(5, 70);
+        subject.set(5, 71);
+        subject.clearColumn(70);
+
+        assertThat(subject.get(0, 70), is(false));
+        assertThat(subject.get(5, 70), is(false));
+        assertThat(subject.get(5, 71), is(true));
+    }
+
+    @Test
+    public void set_growsRows() {
+        subject.set(10, 3);
+
+        assertThat(subject.getRowCapacity() > 10, is(true));
+        assertThat(subject.get(10, 3), is(true));
+    }
+
+    @Test
+    public void set_growsStrideKeepingRows() {
+        subject.set(0, 1);
+        subject.set(2, 5);
+        subject.set(1, 130);
+
+        assertThat(subject.getStride(), is(3));
+        assertThat(subject.get(0, 1), is(true));
+        assertThat(subject.get(2, 5), is(true));
+        assertThat(subject.get(1, 130), is(true));
+        assertThat(subject.get(1, 1), is(false));
+    }
+
+    @Test
+    public void clear() {
+        subject.set(2, 5);
+        subject.set(2, 70);
+        subject.set(3, 5);
+
+        subject.clear(2, 5);
+        assertThat(subject.get(2, 5), is(false));
+        assertThat(subject.get(2, 70), is(true));
+
+        subject.clear(2);
+        assertThat(subject.isEmpty(2), is(true));
+        assertThat(subject.get(3, 5), is(true));
+    }
+
+    @Test
+    public void nextSetBit() {
+        subject.set(1, 0);
+        subject.set(1, 63);
+        subject.set(1, 64);
+        subject.set(1, 200);
+
+        assertThat(subject.nextSetBit(1, 0), is(0));
+        assertThat(subject.nextSetBit(1, 1), is(63));
+        assertThat(subject.nextSetBit(1, 64), is(64));
+        assertThat(subject.nextSetBit(1, 65), is(200));
+        assertThat(subject.nextSetBit(1, 201), is(-1));
+        assertThat(subject.nextSetBit(0, 0), is(-1));
+    }
+
+    @Test
+    public void intersects() {
+        subject.set(0, 2);
+        subject.set(0, 90);
+
+        BitSet set = new BitSet();
+        set.set(90);
+        assertThat(subject.intersects(0, set), is(true));
+
+        set.clear(90);
+        set.set(3);
+        assertThat(subject.intersects(0, set), is(false));
+        assertThat(subject.intersects(1, set), is(false));
+    }
+
+    @Test
+    public void row_view() {
+        BitMatrix.Row row = subject.getRow(1);
+        row.set(7);
+
+        assertThat(subject.get(1, 7), is(true));
+        assertThat(row.toBitSet().cardinality(), is(1));
+    }
+}